@@ -0,0 +1,147 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the inventory operations the window and the command line run, against the data sets
+ * written by {@link InventoryDataGenerator}. The data sets are kept in the temporary directory
+ * and reused by later runs, the 10M SKU inventory alone is close to half a gigabyte.
+ *
+ * The bulk operations run once per iteration, item lookups are measured per call. The largest
+ * size needs a big heap, pick sizes with {@code -p skus=10000}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx12g"})
+@State(Scope.Benchmark)
+public class InventoryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int skus;
+
+    @Param({"HASH_MAP", "COLUMNAR", "PERSISTENT"})
+    public StorageEngine storageEngine;
+
+    private Path data;
+    private Path output;
+    private Inventory inventory;
+    private String[] lookups;
+    private int nextLookup;
+    private int errors;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, XMLStreamException {
+        InventoryDataGenerator generator = new InventoryDataGenerator(skus);
+        data = InventoryDataGenerator.dataDirectory(skus);
+        generator.writeAll(data);
+        output = Files.createTempFile("inventory-benchmark", ".csv");
+
+        inventory = new Inventory(
+            BuildingSetup.parse(data.resolve(InventoryDataGenerator.SETUP_FILE)).stream(),
+            storageEngine
+        );
+        load();
+
+        Random random = new Random(skus);
+        lookups = new String[1 << 16];
+        for (int i = 0; i < lookups.length; i++) {
+            // One in eight lookups misses.
+            if (i % 8 == 7)
+                lookups[i] = InventoryDataGenerator.itemId(skus + random.nextInt(skus));
+            else
+                lookups[i] = generator.itemIdAt(random.nextInt(skus));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+        if (errors > 0)
+            throw new IllegalStateException(errors + " errors were reported by the benchmark.");
+    }
+
+    private void countError(InventoryError error) {
+        if (!error.getCategory().isWarning())
+            errors++;
+    }
+
+    @Benchmark
+    public int loadInventory() throws IOException {
+        return load();
+    }
+
+    private int load() throws IOException {
+        inventory.loadInventory(
+            data.resolve(InventoryDataGenerator.INVENTORY_FILE),
+            this::countError
+        );
+        return inventory.size();
+    }
+
+    @Benchmark
+    public int updateLocations() throws IOException {
+        inventory.updateLocations(
+            data.resolve(InventoryDataGenerator.LOCATIONS_UPDATE_FILE),
+            this::countError
+        );
+        return inventory.size();
+    }
+
+    @Benchmark
+    public int updateQuantity() throws IOException {
+        inventory.updateQuantity(
+            data.resolve(InventoryDataGenerator.QUANTITY_UPDATE_FILE),
+            this::countError
+        );
+        return inventory.size();
+    }
+
+    @Benchmark
+    public long saveInventory() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            inventory.saveInventory(writer);
+        }
+        return Files.size(output);
+    }
+
+    @Benchmark
+    public long exportInventory() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            inventory.exportInventory(writer);
+        }
+        return Files.size(output);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Optional<Item> getItem() {
+        nextLookup = (nextLookup + 1) & (lookups.length - 1);
+        return inventory.getItem(lookups[nextLookup]);
+    }
+}
@@ -0,0 +1,202 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Writes the building setup, inventory and update files the benchmarks run against. The files
+ * only depend on the number of SKUs, so the same size always gives byte for byte the same files.
+ *
+ * Item ids are written in a scrambled order, like an inventory exported from another system, and
+ * every item has one to three locations spread over the buildings of the setup.
+ */
+public final class InventoryDataGenerator {
+    public static final String SETUP_FILE = "inventory-setup.xml";
+    public static final String INVENTORY_FILE = "inventory.csv";
+    public static final String LOCATIONS_UPDATE_FILE = "locations-update.csv";
+    public static final String QUANTITY_UPDATE_FILE = "quantity-update.csv";
+
+    public static final int BUILDINGS = 20;
+    public static final int AISLES = 40;
+    private static final int PILS = 500;
+    private static final long SEED = 0x5EED;
+
+    private final int skus;
+    private final long step;
+
+    /**
+     * @param skus The number of items in the generated inventory.
+     */
+    public InventoryDataGenerator(int skus) {
+        this.skus = skus;
+        this.step = coprimeStep(skus);
+    }
+
+    /**
+     * A step coprime with the SKU count visits every index exactly once, which scrambles the item
+     * ids without keeping a permutation of them in memory. Stepping by about 0.618 of the count
+     * spreads neighbouring lines far apart.
+     */
+    private static long coprimeStep(int skus) {
+        long step = (long) (skus * 0.6180339887) | 1;
+        while (gcd(step, skus) != 1)
+            step++;
+        return step;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    public static String itemId(long index) {
+        return "fp" + index;
+    }
+
+    /**
+     * @return The id of the n-th item of the inventory file.
+     */
+    public String itemIdAt(int line) {
+        return itemId(line * step % skus);
+    }
+
+    public void writeBuildingSetup(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<buildings>\n");
+            for (int building = 1; building <= BUILDINGS; building++) {
+                writer.write("    <building name=\"" + building + "\">\n");
+                writer.write("        <aisles>" + AISLES + "</aisles>\n");
+                writer.write("        <special name=\"Dock\" nick=\"D\"/>\n");
+                writer.write("        <special name=\"Office\" nick=\"O\"/>\n");
+                writer.write("    </building>\n");
+            }
+            writer.write("</buildings>\n");
+        }
+    }
+
+    private static String location(Random random) {
+        final int building = random.nextInt(BUILDINGS) + 1;
+        final String aisle;
+        if (random.nextInt(50) == 0)
+            aisle = random.nextBoolean() ? "D" : "O";
+        else
+            aisle = Integer.toString(random.nextInt(AISLES) + 1);
+        final String pil;
+        if (random.nextInt(10) == 0)
+            pil = "-";
+        else
+            pil = Integer.toString(random.nextInt(PILS) + 1);
+        return building + "." + aisle + "." + pil;
+    }
+
+    private static String locations(Random random) {
+        StringBuilder locations = new StringBuilder(location(random));
+        final int count = random.nextInt(3);
+        for (int i = 0; i < count; i++)
+            locations.append(" Y ").append(location(random));
+        return locations.toString();
+    }
+
+    private static String quantity(Random random) {
+        if (random.nextInt(20) == 0)
+            return "-";
+        return Integer.toString(random.nextInt(1000));
+    }
+
+    public void writeInventory(Path file) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(Inventory.INVENTORY_HEADER);
+            writer.write('\n');
+            for (int line = 0; line < skus; line++) {
+                writer.write(itemIdAt(line));
+                writer.write(',');
+                writer.write(locations(random));
+                writer.write(',');
+                writer.write(quantity(random));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes an update touching a tenth of the items. Most lines update existing items, the rest
+     * add new items that are deleted again further down, so applying the update again leaves the
+     * inventory as it was after the first time.
+     */
+    private void writeUpdate(Path file, String header, long seed, boolean locations) throws
+        IOException {
+        Random random = new Random(seed);
+        final int lines = Math.max(1, skus / 10);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(header);
+            writer.write('\n');
+            for (int line = 0; line < lines; line++) {
+                final String value = locations ? locations(random) : quantity(random);
+                if (line % 20 == 19) {
+                    final String added = itemId(skus + line);
+                    writer.write(added + ",add," + value + '\n');
+                    writer.write(added + ",delete," + value + '\n');
+                } else {
+                    writer.write(itemIdAt(random.nextInt(skus)) + ",update," + value + '\n');
+                }
+            }
+        }
+    }
+
+    public void writeLocationsUpdate(Path file) throws IOException {
+        writeUpdate(file, Inventory.LOCATIONS_UPDATE_HEADER, SEED + 1, true);
+    }
+
+    public void writeQuantityUpdate(Path file) throws IOException {
+        writeUpdate(file, Inventory.QUANTITY_UPDATE_HEADER, SEED + 2, false);
+    }
+
+    /**
+     * Writes every file into the directory unless it is already there. A file is written under a
+     * temporary name first, so an interrupted run never leaves a partial file to be reused.
+     */
+    public void writeAll(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeIfMissing(directory.resolve(SETUP_FILE), this::writeBuildingSetup);
+        writeIfMissing(directory.resolve(INVENTORY_FILE), this::writeInventory);
+        writeIfMissing(directory.resolve(LOCATIONS_UPDATE_FILE), this::writeLocationsUpdate);
+        writeIfMissing(directory.resolve(QUANTITY_UPDATE_FILE), this::writeQuantityUpdate);
+    }
+
+    private interface FileWriter {
+        void write(Path file) throws IOException;
+    }
+
+    private static void writeIfMissing(Path file, FileWriter writer) throws IOException {
+        if (Files.exists(file))
+            return;
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        writer.write(temporary);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The directory a data set is kept in between benchmark runs.
+     */
+    public static Path dataDirectory(int skus) {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "shipping-inventory-jmh", "" + skus);
+    }
+
+    /**
+     * Run with: directory skus
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: InventoryDataGenerator <directory> <skus>");
+            System.exit(2);
+        }
+        new InventoryDataGenerator(Integer.parseInt(args[1])).writeAll(Paths.get(args[0]));
+    }
+}
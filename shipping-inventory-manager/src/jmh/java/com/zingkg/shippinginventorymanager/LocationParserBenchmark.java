@@ -0,0 +1,57 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single pass location tokenizer against the regular expression based parser it
+ * replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocationParserBenchmark {
+    @Param({"1.2.3", "1.2.3 Y 1.4.-", "b12.4.1123 Y b12.4.1124 Y b7.20.9 Y b7.-.-"})
+    public String locations;
+
+    @Benchmark
+    public List<PIL> tokenizer() {
+        return LocationParser.parse(locations);
+    }
+
+    @Benchmark
+    public List<PIL> regex() {
+        return Arrays.stream(
+            locations.replaceAll(" Y ", " y ").split("y")
+        ).map(location -> {
+            String[] locationTokens = location.trim().split("\\.");
+            if (locationTokens.length < 3)
+                throw new InventoryParseException("Exception occurred when parsing locations.");
+
+            Optional<String> pilLocation;
+            if (locationTokens[2].equals("-"))
+                pilLocation = Optional.empty();
+            else
+                pilLocation = Optional.of(locationTokens[2]);
+
+            return new PIL(locationTokens[0], locationTokens[1], pilLocation);
+        }).collect(Collectors.toList());
+    }
+}
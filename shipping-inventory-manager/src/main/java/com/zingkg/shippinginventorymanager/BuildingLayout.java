@@ -0,0 +1,84 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The building setup compiled into a lookup table for checking locations. Each building maps to
+ * its number of aisles and the nicknames of its special areas, so a location is checked with a
+ * single hash lookup and either a digit scan of the aisle or a lookup of its nickname.
+ *
+ * An aisle is valid if it is "-", a number from 1 to the number of aisles of the building, or the
+ * nickname of one of its special areas.
+ */
+final class BuildingLayout {
+    enum Check {
+        VALID,
+        UNKNOWN_BUILDING,
+        UNKNOWN_AISLE
+    }
+
+    private static final class Layout {
+        final int aisles;
+        final Set<String> nicks;
+
+        Layout(int aisles, Set<String> nicks) {
+            this.aisles = aisles;
+            this.nicks = nicks;
+        }
+    }
+
+    private final Map<String, Layout> buildings = new HashMap<>();
+
+    public BuildingLayout(Collection<Building> buildings) {
+        for (Building building : buildings) {
+            Set<String> nicks = new HashSet<>();
+            building.getSpecials().forEach(special -> nicks.add(special.nick));
+            this.buildings.put(building.getName(), new Layout(building.getAisles(), nicks));
+        }
+    }
+
+    /**
+     * Checks every location, stopping at the first that is not valid.
+     */
+    public Check check(List<PIL> locations) {
+        for (int i = 0; i < locations.size(); i++) {
+            final Check check = check(locations.get(i));
+            if (check != Check.VALID)
+                return check;
+        }
+        return Check.VALID;
+    }
+
+    public Check check(PIL location) {
+        final Layout layout = buildings.get(location.getBuilding());
+        if (layout == null)
+            return Check.UNKNOWN_BUILDING;
+
+        final String aisle = location.getAisle();
+        if (aisle.equals("-") ||
+            isAisleNumber(aisle, layout.aisles) ||
+            layout.nicks.contains(aisle))
+            return Check.VALID;
+        return Check.UNKNOWN_AISLE;
+    }
+
+    private static boolean isAisleNumber(String aisle, int aisles) {
+        final int length = aisle.length();
+        if (length == 0 || length > 9)
+            return false;
+
+        int number = 0;
+        for (int i = 0; i < length; i++) {
+            final int digit = aisle.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return false;
+            number = number * 10 + digit;
+        }
+        return number >= 1 && number <= aisles;
+    }
+}
@@ -0,0 +1,247 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the building setup XML. Every child of the root element is a building:
+ *
+ * <pre>
+ * &lt;building name="1"&gt;
+ *     &lt;aisles&gt;20&lt;/aisles&gt;
+ *     &lt;special name="Dock" nick="D"/&gt;
+ * &lt;/building&gt;
+ * </pre>
+ *
+ * The XML is read with a streaming parser, and the buildings read from it are kept in a compiled
+ * binary form next to it so later launches do not parse the XML at all:
+ *
+ * <pre>
+ * int   magic "SIMB"
+ * int   format version
+ * long  modification time of the XML in milliseconds
+ * long  size of the XML
+ * bytes SHA-256 of the XML
+ * int   building count
+ * per building: name, aisle count, special count and the name and nick of every special
+ * </pre>
+ *
+ * The compiled form is used as is while the modification time and size of the XML match. When
+ * they do not, the XML is hashed and only parsed again if its contents actually changed.
+ */
+final class BuildingSetup {
+    private static final int MAGIC = 0x53494D42;
+    private static final int VERSION = 1;
+    private static final int HASH_SIZE = 32;
+
+    private BuildingSetup() {
+    }
+
+    /**
+     * Parses the building setup XML without building a document of the whole file.
+     */
+    public static List<Building> parse(Path file) throws IOException, XMLStreamException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            return parse(input);
+        }
+    }
+
+    private static List<Building> parse(InputStream input) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(input);
+        try {
+            List<Building> buildings = new ArrayList<>();
+            int depth = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2) {
+                        buildings.add(parseBuilding(reader));
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return buildings;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads one building element, leaving the reader on its end tag.
+     */
+    private static Building parseBuilding(XMLStreamReader reader) throws XMLStreamException {
+        final String name = attribute(reader, "name");
+        Optional<Integer> aisles = Optional.empty();
+        List<Special> specials = new ArrayList<>();
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                final String element = reader.getLocalName();
+                if (element.equals("aisles") && !aisles.isPresent()) {
+                    aisles = Optional.of(Integer.parseInt(reader.getElementText().trim()));
+                    depth--;
+                } else if (element.equals("special")) {
+                    specials.add(
+                        new Special(attribute(reader, "name"), attribute(reader, "nick"))
+                    );
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        if (!aisles.isPresent())
+            throw new XMLStreamException("Building " + name + " has no aisles.");
+        return new Building(name, aisles.get(), specials.stream());
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        final String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Reads the buildings from the compiled form kept at {@code compiled}, falling back to parsing
+     * the XML and compiling it again when it changed. Failing to write the compiled form is not an
+     * error, the XML is simply parsed again next time.
+     */
+    public static List<Building> load(Path file, Path compiled) throws
+        IOException,
+        XMLStreamException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final long size = attributes.size();
+        Optional<Compiled> cached = readCompiled(compiled);
+        if (cached.isPresent() && cached.get().modified == modified && cached.get().size == size)
+            return cached.get().buildings;
+
+        final byte[] xml = Files.readAllBytes(file);
+        final byte[] hash = hash(xml);
+        List<Building> buildings;
+        if (cached.isPresent() && Arrays.equals(cached.get().hash, hash))
+            buildings = cached.get().buildings;
+        else
+            buildings = parse(new ByteArrayInputStream(xml));
+        try {
+            writeCompiled(compiled, new Compiled(modified, size, hash, buildings));
+        } catch (IOException e) {
+            // Keep going with the parsed buildings.
+        }
+        return buildings;
+    }
+
+    private static byte[] hash(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Optional<Compiled> readCompiled(Path compiled) {
+        if (!Files.exists(compiled))
+            return Optional.empty();
+
+        try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(compiled))
+        )) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return Optional.empty();
+
+            final long modified = input.readLong();
+            final long size = input.readLong();
+            final byte[] hash = new byte[HASH_SIZE];
+            input.readFully(hash);
+            final int buildingCount = input.readInt();
+            List<Building> buildings = new ArrayList<>(buildingCount);
+            for (int i = 0; i < buildingCount; i++) {
+                final String name = input.readUTF();
+                final int aisles = input.readInt();
+                final int specialCount = input.readInt();
+                List<Special> specials = new ArrayList<>(specialCount);
+                for (int j = 0; j < specialCount; j++)
+                    specials.add(new Special(input.readUTF(), input.readUTF()));
+                buildings.add(new Building(name, aisles, specials.stream()));
+            }
+            if (input.read() != -1)
+                return Optional.empty();
+            return Optional.of(new Compiled(modified, size, hash, buildings));
+        } catch (IOException | RuntimeException e) {
+            // A damaged compiled form is rebuilt from the XML.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the compiled form to a temporary file first so a crash never leaves a partial one.
+     */
+    private static void writeCompiled(Path compiled, Compiled setup) throws IOException {
+        Path temporary = compiled.resolveSibling(compiled.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temporary))
+        )) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(setup.modified);
+            output.writeLong(setup.size);
+            output.write(setup.hash);
+            output.writeInt(setup.buildings.size());
+            for (Building building : setup.buildings) {
+                output.writeUTF(building.getName());
+                output.writeInt(building.getAisles());
+                List<Special> specials = new ArrayList<>();
+                building.getSpecials().forEach(specials::add);
+                output.writeInt(specials.size());
+                for (Special special : specials) {
+                    output.writeUTF(special.name);
+                    output.writeUTF(special.nick);
+                }
+            }
+        }
+        Files.move(
+            temporary,
+            compiled,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private static final class Compiled {
+        final long modified;
+        final long size;
+        final byte[] hash;
+        final List<Building> buildings;
+
+        Compiled(long modified, long size, byte[] hash, List<Building> buildings) {
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.buildings = buildings;
+        }
+    }
+}
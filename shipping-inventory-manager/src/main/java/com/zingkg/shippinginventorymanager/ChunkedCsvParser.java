@@ -0,0 +1,236 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Parses the lines of a file in parallel. The file is cut into chunks on line boundaries, every
+ * chunk is parsed by its own fork-join task, and the results are handed back chunk by chunk in file
+ * order so the caller can apply them exactly as if the file had been read line by line. A chunk is
+ * handed back as soon as it and every chunk before it are parsed, and only a few chunks are parsed
+ * ahead of the one being applied, so the results of the whole file are never held at once.
+ */
+final class ChunkedCsvParser {
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    private ChunkedCsvParser() {
+    }
+
+    /**
+     * Starts parsing every line of the file from the given offset onward. The parse has to be
+     * closed, which cancels the chunks not taken yet.
+     *
+     * @param file The file to parse.
+     * @param start Offset of the first line to parse, usually just past the header.
+     * @param parser Converts a line into a result. Called concurrently from several threads.
+     * @param readTime Receives the nanoseconds each chunk spent finding its lines, outside of the
+     *                 parser. Called concurrently from several threads.
+     */
+    public static <T> Chunks<T> parse(
+        Path file,
+        long start,
+        Function<CsvLine, T> parser,
+        LongConsumer readTime
+    ) throws IOException {
+        return new Chunks<>(file, chunkBoundaries(file, start), parser, readTime);
+    }
+
+    /**
+     * The chunks of a parse, taken in file order on the thread that started it.
+     */
+    static final class Chunks<T> implements Closeable {
+        private final Path file;
+        private final long[] boundaries;
+        private final Function<CsvLine, T> parser;
+        private final LongConsumer readTime;
+        private final int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        private final Deque<ForkJoinTask<List<T>>> running = new ArrayDeque<>();
+        private int submitted;
+        private int taken;
+
+        private Chunks(
+            Path file,
+            long[] boundaries,
+            Function<CsvLine, T> parser,
+            LongConsumer readTime
+        ) {
+            this.file = file;
+            this.boundaries = boundaries;
+            this.parser = parser;
+            this.readTime = readTime;
+            submit();
+        }
+
+        private void submit() {
+            while (submitted < boundaries.length - 1 && running.size() < window) {
+                running.add(ForkJoinPool.commonPool().submit(new ChunkTask<>(
+                    file,
+                    boundaries[submitted],
+                    boundaries[submitted + 1],
+                    parser,
+                    readTime
+                )));
+                submitted++;
+            }
+        }
+
+        public boolean hasNext() {
+            return !running.isEmpty();
+        }
+
+        /**
+         * Waits for the next chunk to be parsed.
+         *
+         * @return One result per line of the chunk.
+         */
+        public List<T> next() throws IOException {
+            if (running.isEmpty())
+                throw new NoSuchElementException();
+
+            final List<T> results;
+            try {
+                results = running.remove().join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            taken++;
+            submit();
+            return results;
+        }
+
+        /**
+         * @return Offset of the first line of the chunk taken last.
+         */
+        public long chunkStart() {
+            return boundaries[taken - 1];
+        }
+
+        /**
+         * @return Offset just past the last line of the chunk taken last.
+         */
+        public long chunkEnd() {
+            return boundaries[taken];
+        }
+
+        /**
+         * @return Size of the file, which is where the last chunk ends.
+         */
+        public long size() {
+            return boundaries[boundaries.length - 1];
+        }
+
+        @Override
+        public void close() {
+            running.forEach(task -> task.cancel(false));
+            running.clear();
+        }
+    }
+
+    /**
+     * @return True if the file is large enough that splitting it is worth the overhead.
+     */
+    public static boolean isWorthSplitting(long size) {
+        return size >= 2 * MIN_CHUNK_SIZE;
+    }
+
+    private static long[] chunkBoundaries(Path file, long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            final long chunkSize = Math.max(
+                MIN_CHUNK_SIZE,
+                (size - start) / (parallelism * 4L) + 1
+            );
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(start);
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long next = start + chunkSize;
+            while (next < size) {
+                final long boundary = nextLineStart(channel, next, buffer);
+                if (boundary >= size)
+                    break;
+                boundaries.add(boundary);
+                next = boundary + chunkSize;
+            }
+            boundaries.add(size);
+            return boundaries.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    private static long nextLineStart(
+        FileChannel channel,
+        long from,
+        ByteBuffer buffer
+    ) throws IOException {
+        long position = from;
+        while (true) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read <= 0)
+                return channel.size();
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+    }
+
+    private static class ChunkTask<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final long start;
+        private final long end;
+        private final Function<CsvLine, T> parser;
+        private final LongConsumer readTime;
+
+        ChunkTask(
+            Path file,
+            long start,
+            long end,
+            Function<CsvLine, T> parser,
+            LongConsumer readTime
+        ) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.parser = parser;
+            this.readTime = readTime;
+        }
+
+        @Override
+        protected List<T> compute() {
+            List<T> results = new ArrayList<>();
+            try (MappedLineReader reader = new MappedLineReader(file, start, end)) {
+                long reading = 0;
+                long mark = System.nanoTime();
+                while (reader.nextLine()) {
+                    reading += System.nanoTime() - mark;
+                    results.add(parser.apply(reader));
+                    mark = System.nanoTime();
+                }
+                readTime.accept(reading + System.nanoTime() - mark);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return results;
+        }
+    }
+}
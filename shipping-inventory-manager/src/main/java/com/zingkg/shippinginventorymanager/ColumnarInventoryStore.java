@@ -0,0 +1,467 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the inventory in parallel primitive arrays rather than one object graph per item.
+ *
+ * Every item id gets a slot. The slot holds the id, its hash, the quantity and the range of its
+ * locations in the location arrays. Item ids are found through an open addressing index of slots
+ * using linear probing. Locations are packed into parallel arrays of building codes, aisle codes
+ * and PILs, where building and aisle names are replaced by codes into a small name table. Items
+ * are only materialized when they are read.
+ *
+ * Walks in item id order go through an array of slots kept in item id order. It is sorted
+ * lazily: slots of new items are appended unsorted and are sorted and merged in on the next walk,
+ * and after a removal the array is built again from the live slots. This costs one int per item
+ * instead of an entry of an ordered map.
+ */
+final class ColumnarInventoryStore implements InventoryStore {
+    private static final int NO_QUANTITY = Item.NO_QUANTITY;
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Slot columns.
+    private String[] itemIds = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] locationStarts = new int[INITIAL_CAPACITY];
+    private int[] locationCounts = new int[INITIAL_CAPACITY];
+    private int slotCount;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotCount;
+
+    // Open addressing index from item id hash to slot.
+    private int[] index = newIndex(INITIAL_CAPACITY * 2);
+    private int size;
+
+    // Slots in item id order up to sortedCount, followed by the slots of newer items.
+    private int[] orderedSlots = new int[INITIAL_CAPACITY];
+    private int orderedCount;
+    private int sortedCount;
+    // Set when a removal left the slot of a removed item in the order.
+    private boolean orderStale;
+
+    // Location columns.
+    private int[] locationBuildings = new int[INITIAL_CAPACITY];
+    private int[] locationAisles = new int[INITIAL_CAPACITY];
+    private String[] locationPILs = new String[INITIAL_CAPACITY];
+    private int locationCount;
+    private int liveLocationCount;
+
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    @Override
+    public Optional<Item> get(String itemId) {
+        final int slot = find(itemId);
+        if (slot == EMPTY)
+            return Optional.empty();
+        else
+            return Optional.of(materialize(slot));
+    }
+
+    @Override
+    public boolean contains(String itemId) {
+        return find(itemId) != EMPTY;
+    }
+
+    @Override
+    public void put(Item item) {
+        final String itemId = item.getItemId();
+        final int hash = hash(itemId);
+        int position = hash & (index.length - 1);
+        int slot;
+        while ((slot = index[position]) != EMPTY) {
+            if (hashes[slot] == hash && itemIds[slot].equals(itemId))
+                break;
+            position = (position + 1) & (index.length - 1);
+        }
+
+        if (slot == EMPTY) {
+            slot = allocateSlot();
+            itemIds[slot] = itemId;
+            hashes[slot] = hash;
+            index[position] = slot;
+            appendOrdered(slot);
+            size++;
+            if (size * 2 > index.length)
+                rehash(index.length * 2);
+        } else {
+            liveLocationCount -= locationCounts[slot];
+        }
+        quantities[slot] = item.getQuantity().orElse(NO_QUANTITY);
+        writeLocations(slot, item);
+    }
+
+    /**
+     * Overwrites the quantity column of the slot, the locations are not touched. The locations are
+     * only read from the columns if a listener asks for them.
+     */
+    @Override
+    public Optional<ItemUpdate> updateQuantity(Item update) {
+        final int slot = find(update.getItemId());
+        if (slot == EMPTY)
+            return Optional.empty();
+
+        final Optional<Integer> previous = quantity(slot);
+        quantities[slot] = update.getQuantity().orElse(NO_QUANTITY);
+        return Optional.of(ItemUpdate.ofQuantity(
+            update.getItemId(),
+            previous,
+            update.getQuantity(),
+            locationCounts[slot],
+            () -> locations(slot)
+        ));
+    }
+
+    /**
+     * Appends the locations of the update to the location columns. The codes of the locations
+     * before are copied out first, as their range is released, and only turned into locations if
+     * a listener asks for them.
+     */
+    @Override
+    public Optional<ItemUpdate> updateLocations(Item update) {
+        final int slot = find(update.getItemId());
+        if (slot == EMPTY)
+            return Optional.empty();
+
+        final int start = locationStarts[slot];
+        final int count = locationCounts[slot];
+        final int[] buildings = Arrays.copyOfRange(locationBuildings, start, start + count);
+        final int[] aisles = Arrays.copyOfRange(locationAisles, start, start + count);
+        final String[] pils = Arrays.copyOfRange(locationPILs, start, start + count);
+        liveLocationCount -= count;
+        writeLocations(slot, update);
+        return Optional.of(ItemUpdate.ofLocations(
+            update.getItemId(),
+            quantity(slot),
+            count,
+            () -> locations(buildings, aisles, pils, 0, count),
+            update
+        ));
+    }
+
+    @Override
+    public void remove(String itemId) {
+        final int hash = hash(itemId);
+        final int mask = index.length - 1;
+        int position = hash & mask;
+        int slot;
+        while ((slot = index[position]) != EMPTY) {
+            if (hashes[slot] == hash && itemIds[slot].equals(itemId))
+                break;
+            position = (position + 1) & mask;
+        }
+        if (slot == EMPTY)
+            return;
+
+        // Backward shift deletion keeps probe sequences intact without tombstones.
+        int hole = position;
+        int next = (hole + 1) & mask;
+        while (index[next] != EMPTY) {
+            final int home = hashes[index[next]] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        index[hole] = EMPTY;
+        orderStale = true;
+
+        liveLocationCount -= locationCounts[slot];
+        releaseLocations(slot);
+        itemIds[slot] = null;
+        locationStarts[slot] = 0;
+        locationCounts[slot] = 0;
+        releaseSlot(slot);
+        size--;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(itemIds, 0, slotCount, null);
+        Arrays.fill(locationStarts, 0, slotCount, 0);
+        Arrays.fill(locationCounts, 0, slotCount, 0);
+        Arrays.fill(locationPILs, 0, locationCount, null);
+        Arrays.fill(index, EMPTY);
+        orderedCount = 0;
+        sortedCount = 0;
+        orderStale = false;
+        slotCount = 0;
+        freeSlotCount = 0;
+        size = 0;
+        locationCount = 0;
+        liveLocationCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Stream<Item> items() {
+        return liveSlots().mapToObj(this::materialize);
+    }
+
+    @Override
+    public Stream<String> itemIds() {
+        return liveSlots().mapToObj(slot -> itemIds[slot]);
+    }
+
+    @Override
+    public Stream<Item> sortedItems() {
+        final int[] slots = sortedSlots();
+        return Arrays.stream(slots, 0, orderedCount).mapToObj(this::materialize);
+    }
+
+    private void appendOrdered(int slot) {
+        if (orderStale)
+            return;
+
+        if (orderedCount == orderedSlots.length)
+            orderedSlots = Arrays.copyOf(orderedSlots, orderedSlots.length * 2);
+        orderedSlots[orderedCount++] = slot;
+    }
+
+    /**
+     * Brings the order of the slots up to date, sorting the slots of the items added since the
+     * last walk and merging them into the slots already in order.
+     */
+    private int[] sortedSlots() {
+        if (orderStale) {
+            if (orderedSlots.length < size)
+                orderedSlots = new int[itemIds.length];
+            orderedCount = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (itemIds[slot] != null)
+                    orderedSlots[orderedCount++] = slot;
+            }
+            sortedCount = 0;
+            orderStale = false;
+        }
+        if (sortedCount < orderedCount) {
+            final int[] buffer = new int[orderedCount];
+            sortSlots(orderedSlots, sortedCount, orderedCount, buffer);
+            mergeSlots(orderedSlots, 0, sortedCount, orderedCount, buffer);
+            sortedCount = orderedCount;
+        }
+        return orderedSlots;
+    }
+
+    /**
+     * Merge sorts the slots in [from, to) by item id.
+     */
+    private void sortSlots(int[] slots, int from, int to, int[] buffer) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                final int slot = slots[i];
+                int j = i;
+                while (j > from && itemIds[slots[j - 1]].compareTo(itemIds[slot]) > 0) {
+                    slots[j] = slots[j - 1];
+                    j--;
+                }
+                slots[j] = slot;
+            }
+            return;
+        }
+
+        final int middle = (from + to) >>> 1;
+        sortSlots(slots, from, middle, buffer);
+        sortSlots(slots, middle, to, buffer);
+        mergeSlots(slots, from, middle, to, buffer);
+    }
+
+    /**
+     * Merges the sorted runs [from, middle) and [middle, to) of the slots.
+     */
+    private void mergeSlots(int[] slots, int from, int middle, int to, int[] buffer) {
+        if (from == middle || middle == to)
+            return;
+
+        int left = from;
+        int right = middle;
+        int out = from;
+        while (left < middle && right < to) {
+            if (itemIds[slots[left]].compareTo(itemIds[slots[right]]) <= 0)
+                buffer[out++] = slots[left++];
+            else
+                buffer[out++] = slots[right++];
+        }
+        while (left < middle)
+            buffer[out++] = slots[left++];
+        while (right < to)
+            buffer[out++] = slots[right++];
+        System.arraycopy(buffer, from, slots, from, to - from);
+    }
+
+    private IntStream liveSlots() {
+        return IntStream.range(0, slotCount).filter(slot -> itemIds[slot] != null);
+    }
+
+    private Item materialize(int slot) {
+        return new Item(itemIds[slot], locations(slot), quantity(slot));
+    }
+
+    private Optional<Integer> quantity(int slot) {
+        final int quantity = quantities[slot];
+        return quantity == NO_QUANTITY ? Optional.empty() : Optional.of(quantity);
+    }
+
+    private List<PIL> locations(int slot) {
+        return locations(
+            locationBuildings,
+            locationAisles,
+            locationPILs,
+            locationStarts[slot],
+            locationCounts[slot]
+        );
+    }
+
+    private List<PIL> locations(
+        int[] buildings,
+        int[] aisles,
+        String[] pils,
+        int start,
+        int count
+    ) {
+        List<PIL> locations = new ArrayList<>(count);
+        for (int i = start; i < start + count; i++)
+            locations.add(new PIL(names.get(buildings[i]), names.get(aisles[i]), pils[i]));
+        return locations;
+    }
+
+    private int find(String itemId) {
+        final int hash = hash(itemId);
+        int position = hash & (index.length - 1);
+        int slot;
+        while ((slot = index[position]) != EMPTY) {
+            if (hashes[slot] == hash && itemIds[slot].equals(itemId))
+                return slot;
+            position = (position + 1) & (index.length - 1);
+        }
+        return EMPTY;
+    }
+
+    private static int hash(String itemId) {
+        final int h = itemId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newIndex(int capacity) {
+        int[] newIndex = new int[capacity];
+        Arrays.fill(newIndex, EMPTY);
+        return newIndex;
+    }
+
+    private void rehash(int capacity) {
+        index = newIndex(capacity);
+        final int mask = capacity - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (itemIds[slot] == null)
+                continue;
+            int position = hashes[slot] & mask;
+            while (index[position] != EMPTY)
+                position = (position + 1) & mask;
+            index[position] = slot;
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0)
+            return freeSlots[--freeSlotCount];
+
+        if (slotCount == itemIds.length) {
+            final int capacity = itemIds.length * 2;
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            locationStarts = Arrays.copyOf(locationStarts, capacity);
+            locationCounts = Arrays.copyOf(locationCounts, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * Appends the locations of the item to the location arrays. Any previous locations of the
+     * slot are left behind as garbage that is reclaimed once it outweighs the live locations.
+     */
+    private void writeLocations(int slot, Item item) {
+        final int start = locationCount;
+        item.getLocations().forEach(location -> {
+            ensureLocationCapacity(locationCount + 1);
+            locationBuildings[locationCount] = nameCode(location.getBuilding());
+            locationAisles[locationCount] = nameCode(location.getAisle());
+            locationPILs[locationCount] = location.getPIL().orElse(null);
+            locationCount++;
+        });
+        releaseLocations(slot);
+        locationStarts[slot] = start;
+        locationCounts[slot] = locationCount - start;
+        liveLocationCount += locationCount - start;
+        if (locationCount > INITIAL_CAPACITY * 64 && liveLocationCount < locationCount / 2)
+            compactLocations();
+    }
+
+    private void releaseLocations(int slot) {
+        final int start = locationStarts[slot];
+        Arrays.fill(locationPILs, start, start + locationCounts[slot], null);
+    }
+
+    private void ensureLocationCapacity(int capacity) {
+        if (capacity <= locationBuildings.length)
+            return;
+
+        final int newCapacity = Math.max(capacity, locationBuildings.length * 2);
+        locationBuildings = Arrays.copyOf(locationBuildings, newCapacity);
+        locationAisles = Arrays.copyOf(locationAisles, newCapacity);
+        locationPILs = Arrays.copyOf(locationPILs, newCapacity);
+    }
+
+    private void compactLocations() {
+        int[] buildings = new int[Math.max(liveLocationCount, INITIAL_CAPACITY)];
+        int[] aisles = new int[buildings.length];
+        String[] pils = new String[buildings.length];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (itemIds[slot] == null)
+                continue;
+            final int start = locationStarts[slot];
+            final int length = locationCounts[slot];
+            System.arraycopy(locationBuildings, start, buildings, count, length);
+            System.arraycopy(locationAisles, start, aisles, count, length);
+            System.arraycopy(locationPILs, start, pils, count, length);
+            locationStarts[slot] = count;
+            count += length;
+        }
+        locationBuildings = buildings;
+        locationAisles = aisles;
+        locationPILs = pils;
+        locationCount = count;
+    }
+
+    private int nameCode(String name) {
+        Integer code = nameCodes.get(name);
+        if (code == null) {
+            code = names.size();
+            names.add(name);
+            nameCodes.put(name, code);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,207 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * How an inventory or update file is compressed. Files are read whichever way they are
+ * compressed, which is told by their first bytes, so a compressed file can be used anywhere a
+ * plain one can under any name. Files are written compressed when their name asks for it, see
+ * {@link #forFileName}.
+ */
+enum Compression {
+    /**
+     * Plain text.
+     */
+    NONE,
+    /**
+     * The gzip format, as written by the {@code gzip} tool. Written for names ending in
+     * {@code .gz}.
+     */
+    GZIP,
+    /**
+     * The zlib format with the {@link #DICTIONARY} preset, which takes less space than gzip for
+     * small update files. Written for names ending in {@code .zz}. Only zlib data naming this
+     * dictionary is recognized, as the two bytes of a zlib header alone are often plain text.
+     */
+    DEFLATE;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Preset dictionary of {@link #DEFLATE}. Deflate only refers back to the last 32 KB, so a
+     * dictionary helps the start of a file, which is most of a small update file. It holds the
+     * headers, the update operations and the location prefixes rows are made of, the most common
+     * last since nearer matches take fewer bits.
+     *
+     * Files only name the dictionary by its Adler-32 checksum, changing it makes every file
+     * written with it unreadable.
+     */
+    static final byte[] DICTIONARY = dictionary();
+    private static final int DICTIONARY_ID = dictionaryId();
+
+    private static byte[] dictionary() {
+        StringBuilder dictionary = new StringBuilder();
+        dictionary.append(Inventory.LOCATIONS_UPDATE_HEADER).append('\n');
+        dictionary.append(Inventory.QUANTITY_UPDATE_HEADER).append('\n');
+        dictionary.append(Inventory.INVENTORY_HEADER).append('\n');
+        dictionary.append(",delete,-\n,add,,update,");
+        for (int building = 9; building > 0; building--) {
+            for (int aisle = 9; aisle > 0; aisle--)
+                dictionary.append(building).append('.').append(aisle).append('.');
+        }
+        dictionary.append(".-, Y ,-\n");
+        return dictionary.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int dictionaryId() {
+        Adler32 checksum = new Adler32();
+        checksum.update(DICTIONARY, 0, DICTIONARY.length);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Tells the compression from the first bytes of the file, without moving the position of the
+     * channel.
+     */
+    static Compression detect(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(6);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0)
+                break;
+        }
+        if (magic.position() < 2)
+            return NONE;
+
+        final int first = magic.get(0) & 0xFF;
+        final int second = magic.get(1) & 0xFF;
+        if (first == 0x1F && second == 0x8B)
+            return GZIP;
+        // A zlib header names deflate with a window of at most 32 KB, is a multiple of 31 and,
+        // with the dictionary flag set, is followed by the Adler-32 checksum of the dictionary.
+        if (magic.position() == magic.capacity() &&
+            (first & 0x0F) == 8 &&
+            (first >> 4) <= 7 &&
+            ((first << 8) | second) % 31 == 0 &&
+            (second & 0x20) != 0 &&
+            magic.getInt(2) == DICTIONARY_ID)
+            return DEFLATE;
+        return NONE;
+    }
+
+    /**
+     * @return The compression asked for by the extension of the file name.
+     */
+    static Compression forFileName(Path file) {
+        final String name = file.getFileName().toString();
+        if (name.endsWith(".gz"))
+            return GZIP;
+        if (name.endsWith(".zz"))
+            return DEFLATE;
+        return NONE;
+    }
+
+    /**
+     * @return The stream decompressing what is read from the input.
+     * @throws ZipException If the input is not valid or uses an unknown dictionary.
+     */
+    InputStream inflate(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case DEFLATE:
+                return new DictionaryInflaterInputStream(in);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * @return The stream compressing what is written to the output. Closing it finishes the
+     * compressed data and closes the output.
+     */
+    OutputStream deflate(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case DEFLATE:
+                return new DictionaryDeflaterOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Opens the file for writing text like {@link Files#newBufferedWriter}, compressed the way
+     * its name asks for.
+     */
+    static Writer newBufferedWriter(Path file) throws IOException {
+        OutputStream out = forFileName(file).deflate(Files.newOutputStream(file));
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static final class DictionaryInflaterInputStream extends InflaterInputStream {
+        DictionaryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            final int read = super.read(bytes, offset, length);
+            if (read >= 0 || !inf.needsDictionary())
+                return read;
+
+            if (inf.getAdler() != DICTIONARY_ID)
+                throw new ZipException("Unknown preset dictionary");
+            inf.setDictionary(DICTIONARY);
+            return super.read(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+
+    private static final class DictionaryDeflaterOutputStream extends DeflaterOutputStream {
+        DictionaryDeflaterOutputStream(OutputStream out) {
+            super(out, dictionaryDeflater(), BUFFER_SIZE);
+        }
+
+        private static Deflater dictionaryDeflater() {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            deflater.setDictionary(DICTIONARY);
+            return deflater;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
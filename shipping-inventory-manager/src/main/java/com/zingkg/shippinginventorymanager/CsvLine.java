@@ -0,0 +1,56 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * A single comma separated line whose fields can be read by index. Field counts follow
+ * {@code String.split(",")} in that trailing empty fields are not counted.
+ */
+interface CsvLine {
+    int fieldCount();
+
+    String field(int index);
+
+    /**
+     * @return True if the field is the optional value marker "-".
+     */
+    boolean isOptionalField(int index);
+
+    /**
+     * @throws InventoryParseException If the field is not a valid integer.
+     */
+    int intField(int index);
+}
+
+/**
+ * {@link CsvLine} over an already decoded line of text.
+ */
+final class SplitCsvLine implements CsvLine {
+    private String[] tokens;
+
+    public SplitCsvLine(String line) {
+        this.tokens = line.split(",");
+    }
+
+    @Override
+    public int fieldCount() {
+        return tokens.length;
+    }
+
+    @Override
+    public String field(int index) {
+        return tokens[index];
+    }
+
+    @Override
+    public boolean isOptionalField(int index) {
+        return tokens[index].equals("-");
+    }
+
+    @Override
+    public int intField(int index) {
+        try {
+            return Integer.parseInt(tokens[index]);
+        } catch (NumberFormatException e) {
+            throw new InventoryParseException("Exception occurred when parsing a number.");
+        }
+    }
+}
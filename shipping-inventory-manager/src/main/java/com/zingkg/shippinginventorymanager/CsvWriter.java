@@ -0,0 +1,93 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes inventory rows into a reusable character buffer that is handed to the underlying writer
+ * in large blocks. Strings are copied straight into the buffer and numbers are written digit by
+ * digit, so writing a row does not create any objects.
+ */
+final class CsvWriter implements Appendable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+    private long written;
+
+    CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public CsvWriter append(CharSequence value) throws IOException {
+        return append(value, 0, value.length());
+    }
+
+    @Override
+    public CsvWriter append(CharSequence value, int start, int end) throws IOException {
+        int from = start;
+        while (from < end) {
+            if (length == buffer.length)
+                drain();
+            final int to = Math.min(end, from + buffer.length - length);
+            if (value instanceof String) {
+                ((String) value).getChars(from, to, buffer, length);
+                length += to - from;
+            } else {
+                for (int i = from; i < to; i++)
+                    buffer[length++] = value.charAt(i);
+            }
+            from = to;
+        }
+        return this;
+    }
+
+    @Override
+    public CsvWriter append(char value) throws IOException {
+        if (length == buffer.length)
+            drain();
+        buffer[length++] = value;
+        return this;
+    }
+
+    /**
+     * Appends the decimal digits of the value without turning it into a string first.
+     */
+    static void appendInt(Appendable out, int value) throws IOException {
+        long magnitude = value;
+        if (magnitude < 0) {
+            out.append('-');
+            magnitude = -magnitude;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= magnitude)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            out.append((char) ('0' + magnitude / divisor % 10));
+    }
+
+    /**
+     * @return The number of characters written so far.
+     */
+    long written() {
+        return written + length;
+    }
+
+    private void drain() throws IOException {
+        writer.write(buffer, 0, length);
+        written += length;
+        length = 0;
+    }
+
+    /**
+     * Hands the buffered characters to the underlying writer and flushes it.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        writer.flush();
+    }
+}
@@ -0,0 +1,117 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+import com.zingkg.shippinginventorymanager.InventoryError.Category;
+
+/**
+ * Writes every error to a file as it is reported and keeps a count of each category, while only
+ * the first few errors are kept in memory for display. Memory use is the same for ten errors as
+ * for ten million.
+ */
+final class ErrorReport implements ErrorSink, Closeable {
+    private final Path file;
+    private final BufferedWriter writer;
+    private final int sampleSize;
+    private final List<InventoryError> sample = new ArrayList<>();
+    private final long[] counts = new long[Category.values().length];
+    private long total;
+
+    /**
+     * @param sampleSize The number of errors to keep in memory.
+     */
+    public ErrorReport(Path file, int sampleSize) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file);
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public void accept(InventoryError error) {
+        try {
+            writer.write(error.getMessage());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        counts[error.getCategory().ordinal()]++;
+        total++;
+        if (sample.size() < sampleSize)
+            sample.add(error);
+    }
+
+    public long getCount(Category category) {
+        return counts[category.ordinal()];
+    }
+
+    /**
+     * @return The number of errors reported, warnings included.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The number of errors reported that are not warnings.
+     */
+    public long getFailures() {
+        long failures = 0;
+        for (Category category : Category.values()) {
+            if (!category.isWarning())
+                failures += counts[category.ordinal()];
+        }
+        return failures;
+    }
+
+    /**
+     * @return The first errors reported, up to the sample size.
+     */
+    public List<InventoryError> getSample() {
+        return Collections.unmodifiableList(sample);
+    }
+
+    /**
+     * @return The sampled errors, followed by the count of each category if not every error was
+     * sampled.
+     */
+    public String summary() {
+        StringJoiner lines = new StringJoiner("\n");
+        sample.forEach(error -> lines.add(error.getMessage()));
+        if (total > sample.size())
+            lines.add(countSummary());
+        return lines.toString();
+    }
+
+    /**
+     * @return The number of errors that were not sampled and the count of each category, or an
+     * empty string if every error was sampled.
+     */
+    public String countSummary() {
+        if (total == sample.size())
+            return "";
+
+        StringJoiner lines = new StringJoiner("\n");
+        lines.add(
+            (total - sample.size()) + " more errors were written to " + file.getFileName() + ':'
+        );
+        for (Category category : Category.values()) {
+            if (counts[category.ordinal()] > 0)
+                lines.add("  " + category + ": " + counts[category.ordinal()]);
+        }
+        return lines.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,14 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * Receives the errors of an inventory operation as they are found, so they never have to be held
+ * in memory all at once.
+ */
+@FunctionalInterface
+public interface ErrorSink {
+    void accept(InventoryError error);
+
+    default void accept(InventoryError.Category category, String message) {
+        accept(new InventoryError(category, message));
+    }
+}
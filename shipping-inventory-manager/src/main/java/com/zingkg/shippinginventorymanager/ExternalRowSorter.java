@@ -0,0 +1,224 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts inventory rows by item id within a memory budget. Rows are collected until they take up
+ * the budget, then sorted and spilled to a temporary file as a run. The runs are merged into the
+ * sorted output at the end, at most {@link #MAX_FAN_IN} at a time so the number of open files
+ * stays bounded, with more merge passes as the number of runs grows.
+ *
+ * Rows are compared by their item id alone, the text up to the first comma, so the order is the
+ * same as that of the item ids and the output matches an export walked in item id order. Runs
+ * store every row as its UTF-8 bytes with their length in front, which keeps them exact
+ * whatever characters the row holds.
+ */
+final class ExternalRowSorter implements Closeable {
+    static final int MAX_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Rough size of a String with its char array plus the list slot pointing to it.
+    private static final int ROW_OVERHEAD = 64;
+
+    interface RowSink {
+        void accept(String row) throws IOException;
+    }
+
+    private final Path directory;
+    private final long memoryBudget;
+    private final List<String> rows = new ArrayList<>();
+    private long bufferedBytes;
+    private List<Path> runs = new ArrayList<>();
+    private int nextRun;
+
+    /**
+     * @param directory Directory the runs are spilled to, they are deleted on close.
+     * @param memoryBudget How many bytes of rows to hold in memory before spilling them.
+     */
+    ExternalRowSorter(Path directory, long memoryBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    void add(String row) throws IOException {
+        rows.add(row);
+        bufferedBytes += ROW_OVERHEAD + 2L * row.length();
+        if (bufferedBytes >= memoryBudget)
+            spill();
+    }
+
+    /**
+     * @return The number of runs spilled so far.
+     */
+    int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Hands every row added to the sink in item id order. Rows with the same item id come out in
+     * no particular order.
+     */
+    void sorted(RowSink sink) throws IOException {
+        if (runs.isEmpty()) {
+            rows.sort(ExternalRowSorter::compareItemIds);
+            for (String row : rows)
+                sink.accept(row);
+            return;
+        }
+
+        spill();
+        while (runs.size() > MAX_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                final int to = Math.min(runs.size(), from + MAX_FAN_IN);
+                final List<Path> group = runs.subList(from, to);
+                Path run = nextRunFile();
+                try (DataOutputStream out = openRun(run)) {
+                    merge(group, row -> writeRow(out, row));
+                }
+                for (Path file : group)
+                    Files.delete(file);
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        merge(runs, sink);
+    }
+
+    /**
+     * Compares rows by the item id in front of their first comma.
+     */
+    static int compareItemIds(String first, String second) {
+        final int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            final char a = first.charAt(i);
+            final char b = second.charAt(i);
+            if (a == ',' || b == ',')
+                return a == b ? 0 : a == ',' ? -1 : 1;
+            if (a != b)
+                return a - b;
+        }
+        return endOfItemId(first, length) - endOfItemId(second, length);
+    }
+
+    /**
+     * @return 0 if the item id of the row ends at the given index, which is the length of the
+     * shorter row, or 1 if it goes on.
+     */
+    private static int endOfItemId(String row, int index) {
+        return index < row.length() && row.charAt(index) != ',' ? 1 : 0;
+    }
+
+    private void spill() throws IOException {
+        if (rows.isEmpty())
+            return;
+
+        rows.sort(ExternalRowSorter::compareItemIds);
+        Path run = nextRunFile();
+        runs.add(run);
+        try (DataOutputStream out = openRun(run)) {
+            for (String row : rows)
+                writeRow(out, row);
+        }
+        rows.clear();
+        bufferedBytes = 0;
+    }
+
+    private Path nextRunFile() {
+        return directory.resolve("run-" + nextRun++ + ".bin");
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE)
+        );
+    }
+
+    private static void writeRow(DataOutputStream out, String row) throws IOException {
+        final byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * The next row of a run being merged.
+     */
+    private static final class Cursor implements Closeable {
+        private final DataInputStream in;
+        String row;
+
+        Cursor(Path run) throws IOException {
+            in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE)
+            );
+        }
+
+        /**
+         * @return False once the run is used up.
+         */
+        boolean advance() throws IOException {
+            final int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                row = null;
+                return false;
+            }
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            row = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void merge(List<Path> runs, RowSink sink) throws IOException {
+        PriorityQueue<Cursor> next = new PriorityQueue<>(
+            Math.max(1, runs.size()),
+            (first, second) -> compareItemIds(first.row, second.row)
+        );
+        List<Cursor> cursors = new ArrayList<>(runs.size());
+        try {
+            for (Path run : runs) {
+                Cursor cursor = new Cursor(run);
+                cursors.add(cursor);
+                if (cursor.advance())
+                    next.add(cursor);
+            }
+            while (!next.isEmpty()) {
+                Cursor cursor = next.poll();
+                sink.accept(cursor.row);
+                if (cursor.advance())
+                    next.add(cursor);
+            }
+        } finally {
+            for (Cursor cursor : cursors)
+                cursor.close();
+        }
+    }
+
+    /**
+     * Deletes the runs left in the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int run = 0; run < nextRun; run++)
+            Files.deleteIfExists(directory.resolve("run-" + run + ".bin"));
+        rows.clear();
+    }
+}
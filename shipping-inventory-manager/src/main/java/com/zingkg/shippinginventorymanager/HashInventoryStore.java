@@ -0,0 +1,103 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+final class HashInventoryStore implements InventoryStore {
+    /**
+     * Holds the current item of an id. Both maps share the slot, so replacing an item is a single
+     * hash lookup and leaves the ordered map alone.
+     */
+    private static final class Slot {
+        Item item;
+
+        Slot(Item item) {
+            this.item = item;
+        }
+    }
+
+    private final Map<String, Slot> inventory = new HashMap<>();
+    // Kept next to the hash map so lookups stay constant time while ordered walks need no sort.
+    private final NavigableMap<String, Slot> sorted = new TreeMap<>();
+
+    @Override
+    public Optional<Item> get(String itemId) {
+        Slot slot = inventory.get(itemId);
+        return slot == null ? Optional.empty() : Optional.of(slot.item);
+    }
+
+    @Override
+    public boolean contains(String itemId) {
+        return inventory.containsKey(itemId);
+    }
+
+    @Override
+    public void put(Item item) {
+        Slot slot = inventory.get(item.getItemId());
+        if (slot != null) {
+            slot.item = item;
+        } else {
+            slot = new Slot(item);
+            inventory.put(item.getItemId(), slot);
+            sorted.put(item.getItemId(), slot);
+        }
+    }
+
+    @Override
+    public Optional<ItemUpdate> updateQuantity(Item update) {
+        Slot slot = inventory.get(update.getItemId());
+        if (slot == null)
+            return Optional.empty();
+
+        Item previous = slot.item;
+        slot.item = previous.withQuantity(update.getQuantity());
+        return Optional.of(ItemUpdate.ofQuantity(previous, update.getQuantity()));
+    }
+
+    @Override
+    public Optional<ItemUpdate> updateLocations(Item update) {
+        Slot slot = inventory.get(update.getItemId());
+        if (slot == null)
+            return Optional.empty();
+
+        Item previous = slot.item;
+        slot.item = previous.withLocationsOf(update);
+        return Optional.of(ItemUpdate.ofLocations(previous, update));
+    }
+
+    @Override
+    public void remove(String itemId) {
+        inventory.remove(itemId);
+        sorted.remove(itemId);
+    }
+
+    @Override
+    public void clear() {
+        inventory.clear();
+        sorted.clear();
+    }
+
+    @Override
+    public int size() {
+        return inventory.size();
+    }
+
+    @Override
+    public Stream<Item> items() {
+        return inventory.values().stream().map(slot -> slot.item);
+    }
+
+    @Override
+    public Stream<String> itemIds() {
+        return inventory.keySet().stream();
+    }
+
+    @Override
+    public Stream<Item> sortedItems() {
+        return sorted.values().stream().map(slot -> slot.item);
+    }
+}
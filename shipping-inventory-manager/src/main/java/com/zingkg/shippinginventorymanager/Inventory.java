@@ -1,321 +1,1301 @@
 package com.zingkg.shippinginventorymanager;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.xml.stream.XMLStreamException;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import com.zingkg.shippinginventorymanager.InventoryError.Category;
+import com.zingkg.shippinginventorymanager.InventoryMetrics.Phase;
 
 public class Inventory {
-    private Map<String, Building> buildings;
-    private Map<String, Item> inventory;
+    private BuildingLayout layout;
+    private LocationPool locationPool;
+    private final StorageEngine storageEngine;
+    private InventoryStore inventory;
+    private ParseMode parseMode = ParseMode.PARALLEL;
+    private final List<InventoryListener> listeners = new ArrayList<>();
+    private final LocationIndex locationIndex = new LocationIndex(this::items);
+    private final InventoryAggregates aggregates = new InventoryAggregates(this::items);
+    private final InventoryMetrics metrics = new InventoryMetrics();
+    private volatile InventoryVersion version;
+
+    public Inventory(Stream<Building> buildings) {
+        this(buildings, StorageEngine.HASH_MAP);
+    }
+
+    public Inventory(Stream<Building> buildings, StorageEngine storageEngine) {
+        this.storageEngine = storageEngine;
+        this.inventory = InventoryStore.create(storageEngine);
+        List<Building> setup = buildings.collect(Collectors.toList());
+        this.layout = new BuildingLayout(setup);
+        this.locationPool = new LocationPool(setup.stream());
+        this.listeners.add(locationIndex);
+        this.listeners.add(aggregates);
+        this.listeners.add(metrics);
+        publish();
+    }
 
     public Inventory(Stream<Building> buildings, Stream<String> inventory, String fileName) {
-        this.buildings = buildings.collect(
-            Collectors.collectingAndThen(
-                Collectors.toMap(Building::getName, Function.identity()),
-                Collections::unmodifiableMap
-            )
-        );
+        this(buildings);
         loadInventory(inventory, fileName);
     }
 
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
     public Stream<String> loadInventory(Stream<String> inventoryStream, String fileName) {
-        Stream.Builder<String> errors = Stream.builder();
-        List<String> inventoryLines = inventoryStream.collect(
-            Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)
-        );
-        if (inventoryLines.isEmpty())
+        Stream.Builder<String> messages = Stream.builder();
+        ErrorSink errors = metrics.counting(error -> messages.accept(error.getMessage()));
+        Iterator<String> inventoryLines = inventoryStream.iterator();
+        if (!inventoryLines.hasNext())
             return Stream.empty();
 
-        String[] headerTokens = inventoryLines.remove(0).split(",");
-        final boolean hasHeader = headerTokens.length >= 3 &&
-            headerTokens[0].toLowerCase().equals("item number") &&
-            headerTokens[1].toLowerCase().equals("pil") &&
-            headerTokens[2].toLowerCase().equals("quantity");
-        if (hasHeader) {
-            AtomicInteger lineNumber = new AtomicInteger(2);
-            inventory = new HashMap<>();
-            inventoryLines.stream().map(line -> {
-                Optional<Item> item = Optional.empty();
-                try {
-                    String[] tokens = line.split(",");
-                    if (tokens.length < 3) {
-                        errors.accept(
-                            "Loading " + fileName + " line " + lineNumber.get() + " has errors."
-                        );
-                        throw new InventoryParseException(
-                            "Exception occurred when parsing inventory line."
-                        );
-                    }
-                    Item parsedItem = parseInventoryLine(tokens[0], tokens[1], tokens[2]);
-                    if (checkItemLocations(parsedItem)) {
-                        item = Optional.of(parsedItem);
-                    } else {
-                        errors.accept(
-                            "Loading " + fileName + " line " + lineNumber.get() + " has an " +
-                            "unknown building"
-                        );
-                    }
-                } catch (InventoryParseException e) {
-                    errors.accept(
-                        "Loading " + fileName + " line " + lineNumber.get() +
-                        " has an invalid format."
-                    );
+        final InventoryMetrics.Operation operation = metrics.begin();
+        try {
+            if (hasHeader(new SplitCsvLine(inventoryLines.next()), INVENTORY_HEADER)) {
+                int lineNumber = 2;
+                clearItems();
+                final InventoryMetrics.LineTimer timer = operation.lineTimer();
+                while (inventoryLines.hasNext()) {
+                    SplitCsvLine csvLine = new SplitCsvLine(inventoryLines.next());
+                    timer.lap(Phase.READ);
+                    ParsedLine line = parseLoadLine(csvLine);
+                    timer.lap(Phase.PARSE);
+                    line = validate(line);
+                    timer.lap(Phase.VALIDATE);
+                    applyLoadLine(line, fileName, lineNumber, errors);
+                    timer.lap(Phase.APPLY);
+                    timer.nextLine();
+                    lineNumber++;
                 }
-                lineNumber.incrementAndGet();
-                return item;
-            }).filter(Optional::isPresent).map(Optional::get).forEach(item -> {
-                // Utilizing a forEach to insert into the inventory hash map due to duplicates
-                // causing failure.
-                if (inventory.containsKey(item.getItemId())) {
-                    errors.accept(
-                        "Warning: Loading " + fileName + " item " + item.getItemId() +
-                        " already exists in inventory, updating anyways."
-                    );
+                timer.finish();
+            } else {
+                errors.accept(
+                    Category.MISSING_HEADER,
+                    "Loaded inventory file " + fileName +
+                    " does not have header (" + INVENTORY_HEADER + ')'
+                );
+            }
+        } finally {
+            end();
+        }
+        return messages.build();
+    }
+
+    /**
+     * Loads the inventory directly from a file. The file is read through a memory mapped window
+     * and each row is parsed straight from its bytes into an item, so memory use only depends on
+     * the size of the inventory and not on the size of the file. In {@link ParseMode#PARALLEL}
+     * large files are parsed on several cores before being loaded in file order.
+     */
+    public Stream<String> loadInventory(Path inventoryFile) throws IOException {
+        Stream.Builder<String> messages = Stream.builder();
+        loadInventory(inventoryFile, error -> messages.accept(error.getMessage()));
+        return messages.build();
+    }
+
+    /**
+     * Loads the inventory directly from a file, handing each error to the sink as it is found
+     * instead of collecting them.
+     */
+    public void loadInventory(Path inventoryFile, ErrorSink errors) throws IOException {
+        load(inventoryFile, errors, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Loads the inventory from a file as a single change that can be cancelled through the
+     * monitor. The file is loaded into a new store and only replaces the inventory once it has
+     * been read to the end, so a cancelled load leaves the inventory as it was.
+     *
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    public void loadInventory(
+        Path inventoryFile,
+        ErrorSink errors,
+        ProgressMonitor monitor
+    ) throws IOException {
+        metrics.begin();
+        try {
+            replace(() -> load(inventoryFile, errors, monitor));
+        } finally {
+            end();
+        }
+    }
+
+    private boolean load(
+        Path inventoryFile,
+        ErrorSink sink,
+        ProgressMonitor monitor
+    ) throws IOException {
+        final InventoryMetrics.Operation operation = metrics.begin();
+        try {
+            return load(inventoryFile, metrics.counting(sink), monitor, operation);
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * @return False if the file was empty or had no header, in which case nothing was changed.
+     */
+    private boolean load(
+        Path inventoryFile,
+        ErrorSink errors,
+        ProgressMonitor monitor,
+        InventoryMetrics.Operation operation
+    ) throws IOException {
+        final String fileName = inventoryFile.getFileName().toString();
+        final long headerEnd;
+        final long size;
+        try (MappedLineReader reader = new MappedLineReader(inventoryFile)) {
+            if (!reader.nextLine())
+                return false;
+
+            if (!hasHeader(reader, INVENTORY_HEADER)) {
+                errors.accept(
+                    Category.MISSING_HEADER,
+                    "Loaded inventory file " + fileName +
+                    " does not have header (" + INVENTORY_HEADER + ')'
+                );
+                return false;
+            }
+
+            clearItems();
+            size = reader.size();
+            if (!isParallel(reader)) {
+                int lineNumber = 2;
+                final InventoryMetrics.LineTimer timer = operation.lineTimer();
+                while (reader.nextLine()) {
+                    timer.lap(Phase.READ);
+                    ParsedLine line = parseLoadLine(reader);
+                    timer.lap(Phase.PARSE);
+                    line = validate(line);
+                    timer.lap(Phase.VALIDATE);
+                    applyLoadLine(line, fileName, lineNumber, errors);
+                    timer.lap(Phase.APPLY);
+                    timer.nextLine();
+                    if (lineNumber % PROGRESS_INTERVAL == 0)
+                        reportProgress(monitor, lineNumber, reader.bytesRead(), size);
+                    lineNumber++;
                 }
-                inventory.put(item.getItemId(), item);
+                timer.finish();
+                reportProgress(monitor, lineNumber - 1, size, size);
+                return true;
+            }
+            headerEnd = reader.bytesRead();
+        }
+
+        int lineNumber = 2;
+        try (ChunkedCsvParser.Chunks<ParsedLine> chunks = ChunkedCsvParser.parse(
+            inventoryFile,
+            headerEnd,
+            line -> parseLine(line, this::parseLoadLine, operation),
+            time -> operation.add(Phase.READ, time)
+        )) {
+            while (chunks.hasNext()) {
+                List<ParsedLine> chunk = chunks.next();
+                final long start = System.nanoTime();
+                for (int i = 0; i < chunk.size(); i++) {
+                    applyLoadLine(chunk.get(i), fileName, lineNumber, errors);
+                    if (lineNumber % PROGRESS_INTERVAL == 0)
+                        reportParsedProgress(monitor, lineNumber, i + 1, chunk.size(), chunks);
+                    lineNumber++;
+                }
+                operation.lap(Phase.APPLY, start);
+                reportProgress(monitor, lineNumber - 1, chunks.chunkEnd(), size);
+            }
+        }
+        reportProgress(monitor, lineNumber - 1, size, size);
+        return true;
+    }
+
+    /**
+     * Reports the progress of applying a chunk of lines that were parsed ahead of time, estimating
+     * the bytes processed from the share of the chunk applied.
+     */
+    private static void reportParsedProgress(
+        ProgressMonitor monitor,
+        int lineNumber,
+        int applied,
+        int chunkLines,
+        ChunkedCsvParser.Chunks<?> chunks
+    ) {
+        final long chunkSize = chunks.chunkEnd() - chunks.chunkStart();
+        final long bytes = chunks.chunkStart() + chunkSize * applied / chunkLines;
+        reportProgress(monitor, lineNumber, bytes, chunks.size());
+    }
+
+    /**
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    private static void reportProgress(
+        ProgressMonitor monitor,
+        long lines,
+        long bytes,
+        long totalBytes
+    ) {
+        if (monitor.isCancelled())
+            throw new CancellationException();
+        monitor.progress(lines, bytes, totalBytes);
+    }
+
+    /**
+     * Ends an operation started with {@link InventoryMetrics#begin()}, publishing a new version
+     * for readers once the outermost operation ends.
+     */
+    private void end() {
+        if (metrics.end())
+            publish();
+    }
+
+    /**
+     * Makes the inventory as it is now the version handed to readers. Only the
+     * {@link StorageEngine#PERSISTENT} engine keeps versions, since its snapshots take O(1).
+     */
+    private void publish() {
+        if (storageEngine == StorageEngine.PERSISTENT)
+            version = new InventoryVersion(inventory.snapshot(), metrics);
+    }
+
+    /**
+     * @return The inventory as it was when the last operation finished, which stays the same no
+     * matter what happens to the inventory afterwards. Safe to call from any thread, also while
+     * an operation is running, and takes O(1).
+     * @throws IllegalStateException If the inventory does not use the
+     * {@link StorageEngine#PERSISTENT} engine.
+     */
+    public InventoryVersion getVersion() {
+        InventoryVersion current = version;
+        if (current == null) {
+            throw new IllegalStateException(
+                "Versions are only kept by the " + StorageEngine.PERSISTENT + " storage engine"
+            );
+        }
+        return current;
+    }
+
+    interface Changes {
+        void apply() throws IOException;
+    }
+
+    /**
+     * Makes changes through {@link #putItem}, {@link #removeItem} and {@link #clearItems} as a
+     * single operation, so readers of {@link #getVersion()} see all of them at once.
+     */
+    void change(Changes changes) throws IOException {
+        metrics.begin();
+        try {
+            changes.apply();
+        } finally {
+            end();
+        }
+    }
+
+    private interface StagedWork {
+        void run() throws IOException;
+    }
+
+    private interface Replacement {
+        /**
+         * @return False if the new store is not to replace the inventory after all.
+         */
+        boolean load() throws IOException;
+    }
+
+    /**
+     * Loads a new store of the configured engine, with listeners held back, and puts it in place
+     * of the inventory once the load is done. Listeners then hear of the inventory being cleared
+     * and of every item of the new store. Unlike {@link #stage} nothing is copied a second time,
+     * which suits a full load. If the load throws or declines, the inventory is left as it was.
+     */
+    private void replace(Replacement replacement) throws IOException {
+        final InventoryStore committed = inventory;
+        final List<InventoryListener> suspended = new ArrayList<>(listeners);
+        listeners.clear();
+        inventory = InventoryStore.create(storageEngine);
+        boolean replaced = false;
+        try {
+            replaced = replacement.load();
+        } finally {
+            if (!replaced)
+                inventory = committed;
+            listeners.addAll(suspended);
+        }
+
+        final InventoryMetrics.Operation operation = metrics.begin();
+        final long start = System.nanoTime();
+        try {
+            for (InventoryListener listener : listeners)
+                listener.cleared();
+            inventory.items().forEach(item -> {
+                for (InventoryListener listener : listeners)
+                    listener.itemPut(Optional.empty(), item);
             });
-        } else {
+        } finally {
+            operation.lap(Phase.APPLY, start);
+            end();
+        }
+    }
+
+    /**
+     * Runs the work against a staging area on top of the inventory, with listeners held back, and
+     * returns the changes it made without applying them. If the work throws, nothing is applied.
+     */
+    private StagingInventoryStore stage(StagedWork work) throws IOException {
+        final InventoryStore committed = inventory;
+        final StagingInventoryStore staging = new StagingInventoryStore(committed);
+        final List<InventoryListener> suspended = new ArrayList<>(listeners);
+        // Listeners only hear about staged changes once they are applied to the inventory.
+        listeners.clear();
+        inventory = staging;
+        try {
+            work.run();
+        } finally {
+            inventory = committed;
+            listeners.addAll(suspended);
+        }
+        return staging;
+    }
+
+    private void commit(StagingInventoryStore staging) {
+        final InventoryMetrics.Operation operation = metrics.begin();
+        final long start = System.nanoTime();
+        try {
+            if (staging.isCleared())
+                clearItems();
+            staging.removedItemIds().forEach(this::removeItem);
+            staging.stagedItems().forEach(this::putItem);
+        } finally {
+            operation.lap(Phase.APPLY, start);
+            end();
+        }
+    }
+
+    /**
+     * @return True if the file of the reader is to be split and parsed in parallel. Compressed
+     * files can not be split.
+     */
+    private boolean isParallel(MappedLineReader reader) {
+        return parseMode == ParseMode.PARALLEL &&
+            !reader.isCompressed() &&
+            ChunkedCsvParser.isWorthSplitting(reader.size());
+    }
+
+    private ParsedLine parseLoadLine(CsvLine line) {
+        if (line.fieldCount() < 3)
+            return ParsedLine.error(ParsedLine.Error.MISSING_VALUES);
+
+        try {
+            return ParsedLine.item(parseInventoryLine(line), null);
+        } catch (InventoryParseException e) {
+            return ParsedLine.error(ParsedLine.Error.INVALID_FORMAT);
+        }
+    }
+
+    /**
+     * Parses and validates a line, timing both on the calling thread.
+     */
+    private ParsedLine parseLine(
+        CsvLine line,
+        Function<CsvLine, ParsedLine> parser,
+        InventoryMetrics.Operation operation
+    ) {
+        final long start = System.nanoTime();
+        final ParsedLine parsed = parser.apply(line);
+        final long parsedAt = operation.lap(Phase.PARSE, start);
+        final ParsedLine validated = validate(parsed);
+        operation.lap(Phase.VALIDATE, parsedAt);
+        return validated;
+    }
+
+    /**
+     * Checks the locations of a parsed item against the building setup. This is done while
+     * parsing so that it runs on the parsing threads. Deleted items are not checked.
+     */
+    private ParsedLine validate(ParsedLine line) {
+        if (line.error != ParsedLine.Error.NONE || "delete".equals(line.operation))
+            return line;
+
+        switch (layout.check(line.item.getLocationList())) {
+            case UNKNOWN_BUILDING:
+                return ParsedLine.error(ParsedLine.Error.UNKNOWN_BUILDING);
+            case UNKNOWN_AISLE:
+                return ParsedLine.error(ParsedLine.Error.UNKNOWN_AISLE);
+            default:
+                return line;
+        }
+    }
+
+    private void applyLoadLine(
+        ParsedLine line,
+        String fileName,
+        int lineNumber,
+        ErrorSink errors
+    ) {
+        switch (line.error) {
+            case MISSING_VALUES:
+                errors.accept(
+                    Category.MISSING_VALUES,
+                    "Loading " + fileName + " line " + lineNumber + " has errors."
+                );
+                // Lines with missing values are also reported as badly formatted.
+                errors.accept(
+                    Category.INVALID_FORMAT,
+                    "Loading " + fileName + " line " + lineNumber + " has an invalid format."
+                );
+                return;
+            case INVALID_FORMAT:
+                errors.accept(
+                    Category.INVALID_FORMAT,
+                    "Loading " + fileName + " line " + lineNumber + " has an invalid format."
+                );
+                return;
+            case UNKNOWN_BUILDING:
+                errors.accept(
+                    Category.UNKNOWN_BUILDING,
+                    "Loading " + fileName + " line " + lineNumber + " has an unknown building"
+                );
+                return;
+            case UNKNOWN_AISLE:
+                errors.accept(
+                    Category.UNKNOWN_AISLE,
+                    "Loading " + fileName + " line " + lineNumber + " has an unknown aisle"
+                );
+                return;
+            default:
+                break;
+        }
+
+        Item item = line.item;
+
+        if (inventory.contains(item.getItemId())) {
             errors.accept(
-                "Loaded inventory file " + fileName +
-                " does not have header (" + INVENTORY_HEADER + ')'
+                Category.DUPLICATE_ITEM,
+                "Warning: Loading " + fileName + " item " + item.getItemId() +
+                " already exists in inventory, updating anyways."
             );
         }
-        return errors.build();
+        putItem(item);
+    }
+
+    private static boolean hasHeader(CsvLine headerTokens, String header) {
+        String[] expected = header.split(",");
+        if (headerTokens.fieldCount() < expected.length)
+            return false;
+
+        for (int i = 0; i < expected.length; i++) {
+            if (!headerTokens.field(i).toLowerCase().equals(expected[i]))
+                return false;
+        }
+        return true;
     }
 
     public Stream<String> updateLocations(Stream<String> inventoryStream, String fileName) {
-        Stream.Builder<String> errors = Stream.builder();
-        List<String> inventoryLines = inventoryStream.collect(Collectors.toList());
-        final int updateTokenLength = 3;
-        String[] headerTokens = inventoryLines.remove(0).split(",");
-        final boolean hasHeader = headerTokens.length >= updateTokenLength &&
-            headerTokens[0].toLowerCase().equals("item number") &&
-            headerTokens[1].toLowerCase().equals("operation") &&
-            headerTokens[2].toLowerCase().equals("pil");
-        if (hasHeader) {
-            AtomicInteger lineNumber = new AtomicInteger(2);
-            inventoryLines.forEach(line -> {
-                // Parse each line and update the entry.
-                // Lines go like this: item id, action, PIL
-                String[] tokens = line.split(",");
-                if (tokens.length < updateTokenLength) {
-                    errors.accept(
-                        "Updating (" + fileName + ") line " + lineNumber.get() +
-                        " does not have the required number of values (" + updateTokenLength + ')'
-                    );
+        return update(inventoryStream, fileName, UpdateType.LOCATIONS);
+    }
+
+    public Stream<String> updateLocations(Path updateFile) throws IOException {
+        return update(updateFile, UpdateType.LOCATIONS);
+    }
+
+    /**
+     * @return False if the file was rejected as a whole for not having the header.
+     */
+    public boolean updateLocations(Path updateFile, ErrorSink errors) throws IOException {
+        return update(updateFile, UpdateType.LOCATIONS, errors, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Applies a location update file as a single change that can be cancelled through the monitor,
+     * in which case the inventory is left as it was.
+     *
+     * @return False if the file was rejected as a whole for not having the header.
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    public boolean updateLocations(
+        Path updateFile,
+        ErrorSink errors,
+        ProgressMonitor monitor
+    ) throws IOException {
+        metrics.begin();
+        try {
+            final AtomicBoolean accepted = new AtomicBoolean();
+            commit(stage(() ->
+                accepted.set(update(updateFile, UpdateType.LOCATIONS, errors, monitor))
+            ));
+            return accepted.get();
+        } finally {
+            end();
+        }
+    }
+
+    public Stream<String> updateQuantity(Stream<String> inventoryStream, String fileName) {
+        return update(inventoryStream, fileName, UpdateType.QUANTITY);
+    }
+
+    public Stream<String> updateQuantity(Path updateFile) throws IOException {
+        return update(updateFile, UpdateType.QUANTITY);
+    }
+
+    /**
+     * @return False if the file was rejected as a whole for not having the header.
+     */
+    public boolean updateQuantity(Path updateFile, ErrorSink errors) throws IOException {
+        return update(updateFile, UpdateType.QUANTITY, errors, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Applies a quantity update file as a single change that can be cancelled through the monitor,
+     * in which case the inventory is left as it was.
+     *
+     * @return False if the file was rejected as a whole for not having the header.
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    public boolean updateQuantity(
+        Path updateFile,
+        ErrorSink errors,
+        ProgressMonitor monitor
+    ) throws IOException {
+        metrics.begin();
+        try {
+            final AtomicBoolean accepted = new AtomicBoolean();
+            commit(stage(() ->
+                accepted.set(update(updateFile, UpdateType.QUANTITY, errors, monitor))
+            ));
+            return accepted.get();
+        } finally {
+            end();
+        }
+    }
+
+    private Stream<String> update(
+        Stream<String> inventoryStream,
+        String fileName,
+        UpdateType type
+    ) {
+        Stream.Builder<String> messages = Stream.builder();
+        ErrorSink errors = metrics.counting(error -> messages.accept(error.getMessage()));
+        Iterator<String> inventoryLines = inventoryStream.iterator();
+        final InventoryMetrics.Operation operation = metrics.begin();
+        try {
+            if (inventoryLines.hasNext() &&
+                hasHeader(new SplitCsvLine(inventoryLines.next()), type.header)) {
+                int lineNumber = 2;
+                final InventoryMetrics.LineTimer timer = operation.lineTimer();
+                while (inventoryLines.hasNext()) {
+                    SplitCsvLine csvLine = new SplitCsvLine(inventoryLines.next());
+                    timer.lap(Phase.READ);
+                    ParsedLine line = parseUpdateLine(csvLine, type);
+                    timer.lap(Phase.PARSE);
+                    line = validate(line);
+                    timer.lap(Phase.VALIDATE);
+                    applyUpdateLine(line, type, fileName, lineNumber, errors);
+                    timer.lap(Phase.APPLY);
+                    timer.nextLine();
+                    lineNumber++;
+                }
+                timer.finish();
+                operation.updated(lineNumber - 2, 0);
+            } else {
+                errors.accept(
+                    Category.MISSING_HEADER,
+                    "Updating inventory file " + fileName +
+                    " does not have header (" + type.header + ')'
+                );
+            }
+        } finally {
+            end();
+        }
+        return messages.build();
+    }
+
+    private Stream<String> update(Path updateFile, UpdateType type) throws IOException {
+        Stream.Builder<String> messages = Stream.builder();
+        update(
+            updateFile,
+            type,
+            error -> messages.accept(error.getMessage()),
+            ProgressMonitor.NONE
+        );
+        return messages.build();
+    }
+
+    private boolean update(
+        Path updateFile,
+        UpdateType type,
+        ErrorSink sink,
+        ProgressMonitor monitor
+    ) throws IOException {
+        final InventoryMetrics.Operation operation = metrics.begin();
+        try {
+            return update(updateFile, type, metrics.counting(sink), monitor, operation);
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * @return False if the file did not have the header, in which case nothing was changed.
+     */
+    private boolean update(
+        Path updateFile,
+        UpdateType type,
+        ErrorSink errors,
+        ProgressMonitor monitor,
+        InventoryMetrics.Operation operation
+    ) throws IOException {
+        final String fileName = updateFile.getFileName().toString();
+        final long headerEnd;
+        final long size;
+        try (MappedLineReader reader = new MappedLineReader(updateFile)) {
+            if (!reader.nextLine() || !hasHeader(reader, type.header)) {
+                errors.accept(
+                    Category.MISSING_HEADER,
+                    "Updating inventory file " + fileName +
+                    " does not have header (" + type.header + ')'
+                );
+                return false;
+            }
+
+            size = reader.size();
+            if (!isParallel(reader)) {
+                int lineNumber = 2;
+                final InventoryMetrics.LineTimer timer = operation.lineTimer();
+                while (reader.nextLine()) {
+                    timer.lap(Phase.READ);
+                    ParsedLine line = parseUpdateLine(reader, type);
+                    timer.lap(Phase.PARSE);
+                    line = validate(line);
+                    timer.lap(Phase.VALIDATE);
+                    applyUpdateLine(line, type, fileName, lineNumber, errors);
+                    timer.lap(Phase.APPLY);
+                    timer.nextLine();
+                    if (lineNumber % PROGRESS_INTERVAL == 0)
+                        reportProgress(monitor, lineNumber, reader.bytesRead(), size);
+                    lineNumber++;
                 }
+                timer.finish();
+                operation.updated(lineNumber - 2, size);
+                reportProgress(monitor, lineNumber - 1, size, size);
+                return true;
+            }
+            headerEnd = reader.bytesRead();
+        }
 
-                Item item = parseItemLocations(tokens[0], tokens[2]);
-                final String operation = tokens[1].toLowerCase();
-                if (checkOperationAndItemLocations(operation, item)) {
-                    switch (operation) {
-                        case "add":
-                            // Check item being added to make sure building and spots are valid.
-                            if (inventory.containsKey(item.getItemId()))
-                                updateInventoryWithLocations(item);
-                            else
-                                inventory.put(item.getItemId(), item);
-                            break;
-                        case "delete":
-                            inventory.remove(item.getItemId());
-                            break;
-                        case "update":
-                            if (inventory.containsKey(item.getItemId())) {
-                                updateInventoryWithLocations(item);
-                            } else {
-                                errors.accept(
-                                    "Updating " + fileName + " line " + lineNumber.get() +
-                                    " has invalid item number " + item.getItemId()
-                                );
-                            }
-                            break;
-                        default:
-                            throw new IllegalArgumentException("Bad action: " + tokens[1]);
-                    }
+        int lineNumber = 2;
+        try (ChunkedCsvParser.Chunks<ParsedLine> chunks = ChunkedCsvParser.parse(
+            updateFile,
+            headerEnd,
+            line -> parseLine(line, csvLine -> parseUpdateLine(csvLine, type), operation),
+            time -> operation.add(Phase.READ, time)
+        )) {
+            while (chunks.hasNext()) {
+                List<ParsedLine> chunk = chunks.next();
+                final long start = System.nanoTime();
+                for (int i = 0; i < chunk.size(); i++) {
+                    applyUpdateLine(chunk.get(i), type, fileName, lineNumber, errors);
+                    if (lineNumber % PROGRESS_INTERVAL == 0)
+                        reportParsedProgress(monitor, lineNumber, i + 1, chunk.size(), chunks);
+                    lineNumber++;
+                }
+                operation.lap(Phase.APPLY, start);
+                reportProgress(monitor, lineNumber - 1, chunks.chunkEnd(), size);
+            }
+        }
+        operation.updated(lineNumber - 2, size);
+        reportProgress(monitor, lineNumber - 1, size, size);
+        return true;
+    }
+
+    /**
+     * Applies a batch of location and quantity update files as a single transaction. The kind of
+     * each file is told apart by its header and the files are applied in the given order. Every
+     * file is checked against the inventory as the earlier files of the batch left it, and all
+     * errors of the batch are reported together. The changes are only applied to the inventory if
+     * no file has any error, otherwise the inventory is left untouched.
+     *
+     * @return The errors of every file of the batch.
+     */
+    public Stream<String> updateBatch(List<Path> updateFiles) throws IOException {
+        Stream.Builder<String> messages = Stream.builder();
+        updateBatch(updateFiles, error -> messages.accept(error.getMessage()));
+        return messages.build();
+    }
+
+    /**
+     * Applies a batch of update files as a single transaction, handing each error to the sink as
+     * it is found.
+     *
+     * @return True if the batch was applied.
+     */
+    public boolean updateBatch(List<Path> updateFiles, ErrorSink sink) throws IOException {
+        return updateBatch(updateFiles, sink, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Applies a batch of update files as a single transaction, handing each error to the sink as
+     * it is found. Progress is reported over the batch as a whole and cancelling the monitor
+     * leaves the inventory as it was.
+     *
+     * @return True if the batch was applied.
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    public boolean updateBatch(
+        List<Path> updateFiles,
+        ErrorSink sink,
+        ProgressMonitor monitor
+    ) throws IOException {
+        metrics.begin();
+        try {
+            return applyBatch(updateFiles, sink, monitor);
+        } finally {
+            end();
+        }
+    }
+
+    private boolean applyBatch(
+        List<Path> updateFiles,
+        ErrorSink sink,
+        ProgressMonitor monitor
+    ) throws IOException {
+        final AtomicLong failures = new AtomicLong();
+        final ErrorSink errors = error -> {
+            if (!error.getCategory().isWarning())
+                failures.incrementAndGet();
+            sink.accept(error);
+        };
+        // Errors of the update files are counted as they are applied, only count the batch's own.
+        final ErrorSink batchErrors = metrics.counting(errors);
+        long batchSize = 0;
+        for (Path updateFile : updateFiles)
+            batchSize += Files.size(updateFile);
+        final BatchProgress progress = new BatchProgress(monitor, batchSize);
+        StagingInventoryStore staging = stage(() -> {
+            for (Path updateFile : updateFiles) {
+                Optional<UpdateType> type = updateType(updateFile);
+                if (type.isPresent()) {
+                    update(updateFile, type.get(), errors, progress);
                 } else {
-                    errors.accept(
-                        "Updating " + fileName + " line " + lineNumber.get() +
-                        " has an unknown building"
+                    batchErrors.accept(
+                        Category.MISSING_HEADER,
+                        "Updating inventory file " + updateFile.getFileName() +
+                        " does not have header (" + LOCATIONS_UPDATE_HEADER + ") or (" +
+                        QUANTITY_UPDATE_HEADER + ')'
                     );
                 }
-                lineNumber.incrementAndGet();
-            });
-        } else {
-            errors.accept(
-                "Updating inventory file " + fileName +
-                " does not have header (" + updateHeader + ')'
+                progress.nextFile(Files.size(updateFile));
+            }
+        });
+
+        if (failures.get() > 0) {
+            batchErrors.accept(
+                Category.BATCH_REJECTED,
+                "The batch was not applied, the inventory is unchanged."
             );
+            return false;
         }
-        return errors.build();
+        commit(staging);
+        return true;
     }
 
-    private Item updateInventoryWithLocations(Item item) {
-        return inventory.put(
-            item.getItemId(),
-            inventory.get(item.getItemId()).updateLocations(item.getLocations())
-        );
+    /**
+     * Adds up the progress of the files of a batch.
+     */
+    private static final class BatchProgress implements ProgressMonitor {
+        private final ProgressMonitor monitor;
+        private final long batchSize;
+        private long linesBefore;
+        private long bytesBefore;
+        private long lines;
+
+        BatchProgress(ProgressMonitor monitor, long batchSize) {
+            this.monitor = monitor;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void progress(long lines, long bytes, long totalBytes) {
+            this.lines = lines;
+            monitor.progress(linesBefore + lines, bytesBefore + bytes, batchSize);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return monitor.isCancelled();
+        }
+
+        void nextFile(long fileSize) {
+            linesBefore += lines;
+            bytesBefore += fileSize;
+            lines = 0;
+        }
     }
 
-    public Stream<String> updateQuantity(Stream<String> inventoryStream, String fileName) {
-        Stream.Builder<String> errors = Stream.builder();
-        List<String> inventoryLines = inventoryStream.collect(Collectors.toList());
-        final int updateTokenLength = 3;
-        String[] headerTokens = inventoryLines.remove(0).split(",");
-        final boolean hasHeader = headerTokens.length >= updateTokenLength &&
-            headerTokens[0].toLowerCase().equals("item number") &&
-            headerTokens[1].toLowerCase().equals("operation") &&
-            headerTokens[2].toLowerCase().equals("quantity");
-        if (hasHeader) {
-            AtomicInteger lineNumber = new AtomicInteger(2);
-            inventoryLines.forEach(line -> {
-                // Parse each line and update the entry.
-                // Lines go like this: item id, action, quantity
-                String[] tokens = line.split(",");
-                if (tokens.length < updateTokenLength) {
-                    errors.accept(
-                        "Updating " + fileName + " line " + lineNumber.get() +
-                        " does not have the required number of values " + updateTokenLength
-                    );
-                }
+    private static Optional<UpdateType> updateType(Path updateFile) throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(updateFile)) {
+            if (!reader.nextLine())
+                return Optional.empty();
+            return Arrays.stream(UpdateType.values())
+                .filter(type -> hasHeader(reader, type.header))
+                .findFirst();
+        }
+    }
 
-                Item item = parseItemQuantity(tokens[0], tokens[2]);
-                final String operation = tokens[1].toLowerCase();
-                if (checkOperationAndItemLocations(operation, item)) {
-                    switch (tokens[1].toLowerCase()) {
-                        case "add":
-                            // Check item being added to make sure building and spots are valid.
-                            if (inventory.containsKey(item.getItemId()))
-                                updateInventoryWithQuantity(item);
-                            else
-                                inventory.put(item.getItemId(), item);
-                            break;
-                        case "delete":
-                            inventory.remove(item.getItemId());
-                            break;
-                        case "update":
-                            if (inventory.containsKey(item.getItemId())) {
-                                updateInventoryWithQuantity(item);
-                            } else {
-                                errors.accept(
-                                    "Updating " + fileName + " line " + lineNumber.get() +
-                                    " has invalid item number " + item.getItemId()
-                                );
-                            }
-                            break;
-                        default:
-                            throw new RuntimeException("Bad action: " + tokens[1]);
-                    }
-                } else {
+    private ParsedLine parseUpdateLine(CsvLine line, UpdateType type) {
+        // Lines go like this: item id, action, PIL or quantity
+        if (line.fieldCount() < UPDATE_TOKEN_LENGTH)
+            return ParsedLine.error(ParsedLine.Error.MISSING_VALUES);
+
+        try {
+            final Item item;
+            if (type == UpdateType.LOCATIONS)
+                item = parseItemLocations(line.field(0), line.field(2));
+            else
+                item = parseItemQuantity(line);
+            return ParsedLine.item(item, line.field(1).toLowerCase());
+        } catch (InventoryParseException e) {
+            return ParsedLine.error(ParsedLine.Error.INVALID_FORMAT);
+        }
+    }
+
+    private void applyUpdateLine(
+        ParsedLine line,
+        UpdateType type,
+        String fileName,
+        int lineNumber,
+        ErrorSink errors
+    ) {
+        switch (line.error) {
+            case MISSING_VALUES:
+                errors.accept(
+                    Category.MISSING_VALUES,
+                    "Updating " + fileName + " line " + lineNumber +
+                    " does not have the required number of values (" + UPDATE_TOKEN_LENGTH + ')'
+                );
+                return;
+            case INVALID_FORMAT:
+                errors.accept(
+                    Category.INVALID_FORMAT,
+                    "Updating " + fileName + " line " + lineNumber + " has an invalid format."
+                );
+                return;
+            case UNKNOWN_BUILDING:
+                errors.accept(
+                    Category.UNKNOWN_BUILDING,
+                    "Updating " + fileName + " line " + lineNumber + " has an unknown building"
+                );
+                return;
+            case UNKNOWN_AISLE:
+                errors.accept(
+                    Category.UNKNOWN_AISLE,
+                    "Updating " + fileName + " line " + lineNumber + " has an unknown aisle"
+                );
+                return;
+            default:
+                break;
+        }
+
+        Item item = line.item;
+        switch (line.operation) {
+            case "add":
+                // Check item being added to make sure building and spots are valid.
+                if (!updateInventory(item, type))
+                    putItem(item);
+                break;
+            case "delete":
+                removeItem(item.getItemId());
+                break;
+            case "update":
+                if (!updateInventory(item, type)) {
                     errors.accept(
-                        "Updating " + fileName + " line " + lineNumber.get() +
-                        " has an unknown building"
+                        Category.UNKNOWN_ITEM,
+                        "Updating " + fileName + " line " + lineNumber +
+                        " has invalid item number " + item.getItemId()
                     );
                 }
-                lineNumber.incrementAndGet();
-            });
-        } else {
-            errors.accept(
-                "Updating inventory file " + fileName +
-                " does not have headers (" + updateHeader + ')'
-            );
+                break;
+            default:
+                errors.accept(
+                    Category.UNKNOWN_OPERATION,
+                    "Updating " + fileName + " line " + lineNumber + " has an unknown operation " +
+                    line.operation
+                );
         }
-        return Stream.empty();
     }
 
-    private Item updateInventoryWithQuantity(Item item) {
-        return inventory.put(
-            item.getItemId(),
-            inventory.get(item.getItemId()).updateQuantity(item.getQuantity())
-        );
+    /**
+     * Changes the locations or the quantity of the stored item to those of the update in place,
+     * with a single lookup and without copying the part that stays the same. Listeners get the
+     * change as an {@link ItemUpdate}, so the items are only built for the listeners that need
+     * them.
+     *
+     * @return False if there is no item with the id of the update.
+     */
+    private boolean updateInventory(Item update, UpdateType type) {
+        final Optional<ItemUpdate> change = type == UpdateType.LOCATIONS ?
+            inventory.updateLocations(update) :
+            inventory.updateQuantity(update);
+        if (!change.isPresent())
+            return false;
+
+        for (InventoryListener listener : listeners)
+            listener.itemUpdated(change.get());
+        return true;
     }
 
-    private boolean checkItemLocations(Item item) {
-        return item.getLocations().allMatch(location ->
-            buildings.containsKey(location.getBuilding())
-        );
+    /**
+     * Replaces the inventory with the items of a binary snapshot. The snapshot stays memory mapped
+     * and items are only decoded when they are read, so this takes about the same time no matter
+     * how many items the snapshot holds. Listeners are not notified, this is meant for restoring
+     * the inventory at startup.
+     */
+    public void openSnapshot(InventorySnapshot snapshot) {
+        inventory = new SnapshotInventoryStore(snapshot, InventoryStore.create(storageEngine));
+        locationIndex.invalidate();
+        aggregates.invalidate();
+        metrics.snapshotOpened(snapshot);
+        publish();
+    }
+
+    /**
+     * @return Every item in the inventory, in no particular order.
+     */
+    Stream<Item> items() {
+        return inventory.items();
+    }
+
+    /**
+     * @return Every item in the inventory in item id order.
+     */
+    Stream<Item> sortedItems() {
+        return inventory.sortedItems();
+    }
+
+    /**
+     * @return A copy of the items that later changes do not affect, see
+     * {@link InventoryStore#snapshot()}.
+     */
+    InventoryStore snapshot() {
+        return inventory.snapshot();
+    }
+
+    InventoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    void addListener(InventoryListener listener) {
+        listeners.add(listener);
     }
 
-    private boolean checkOperationAndItemLocations(String operation, Item item) {
-        return operation.equals("delete") || checkItemLocations(item);
+    void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Every change to the stored items goes through here so listeners see all of them.
+     */
+    void putItem(Item item) {
+        Optional<Item> previous = listeners.isEmpty() ?
+            Optional.empty() :
+            inventory.get(item.getItemId());
+        inventory.put(item);
+        for (InventoryListener listener : listeners)
+            listener.itemPut(previous, item);
+    }
+
+    void removeItem(String itemId) {
+        Optional<Item> item = inventory.get(itemId);
+        if (!item.isPresent())
+            return;
+
+        inventory.remove(itemId);
+        for (InventoryListener listener : listeners)
+            listener.itemRemoved(item.get());
+    }
+
+    void clearItems() {
+        inventory.clear();
+        for (InventoryListener listener : listeners)
+            listener.cleared();
+    }
+
+    /**
+     * Parses a row in the format written by {@link Item#toCSVRow()}.
+     *
+     * @throws InventoryParseException If the row is not a valid inventory row.
+     */
+    Item parseItemRow(String row) {
+        CsvLine line = new SplitCsvLine(row);
+        if (line.fieldCount() < 3)
+            throw new InventoryParseException("Exception occurred when parsing inventory line.");
+        return parseInventoryLine(line);
+    }
+
+    /**
+     * Gives the stored item the quantity of a row in the format the journal writes for a change of
+     * the quantity, {@code item id,quantity}.
+     *
+     * @throws InventoryParseException If the row is not valid or there is no item with its id.
+     */
+    void replayQuantity(String row) {
+        CsvLine line = new SplitCsvLine(row);
+        if (line.fieldCount() != 2)
+            throw new InventoryParseException("Exception occurred when parsing quantity line.");
+        Item update = new Item(line.field(0), Stream.empty(), quantityField(line, 1));
+        if (!updateInventory(update, UpdateType.QUANTITY))
+            throw new InventoryParseException("Exception occurred when parsing quantity line.");
     }
 
     public Stream<String> saveInventory() {
         Stream<String> headerStream = Stream.of(INVENTORY_HEADER);
-        Stream<String> itemStream = inventory.values().stream().map(Item::toCSVRow);
-        return Stream.concat(headerStream, itemStream);
+        Stream<String> itemStream = inventory.items().map(Item::toCSVRow);
+        return metrics.timed(Phase.SAVE, Stream.concat(headerStream, itemStream));
     }
 
     public Stream<String> exportInventory() {
         Stream<String> headerStream = Stream.of(INVENTORY_HEADER);
-        Stream<String> itemStream = inventory.keySet().stream().sorted().map(key ->
-            inventory.get(key).toCSVRow() + '\n'
-        );
-        return Stream.concat(headerStream, itemStream);
+        Stream<String> itemStream = inventory.sortedItems().map(Item::toCSVRow);
+        return metrics.timed(Phase.EXPORT, Stream.concat(headerStream, itemStream));
+    }
+
+    /**
+     * Writes the inventory file in storage order straight into the writer, without building a
+     * string per row.
+     */
+    public void saveInventory(Writer writer) throws IOException {
+        write(inventory.items(), writer, Phase.SAVE, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Writes the inventory file in item id order straight into the writer, without building a
+     * string per row.
+     */
+    public void exportInventory(Writer writer) throws IOException {
+        exportInventory(writer, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Writes the inventory file in item id order, reporting progress every few thousand rows.
+     * The size of the file is not known up front, so the total reported is extrapolated from the
+     * rows written so far.
+     *
+     * @throws CancellationException If the monitor was cancelled. The writer is left with part of
+     * the inventory.
+     */
+    public void exportInventory(Writer writer, ProgressMonitor monitor) throws IOException {
+        write(inventory.sortedItems(), writer, Phase.EXPORT, monitor);
+    }
+
+    /**
+     * Writes the same file as {@link #exportInventory(Writer)} without walking the items in item
+     * id order. The rows are sorted in runs of at most the memory budget instead, spilled to a
+     * temporary directory created in the given directory and merged into the export, so the
+     * memory the export takes does not grow with the inventory.
+     *
+     * @param memoryBudget Bytes of rows to hold in memory at a time.
+     */
+    public void exportInventory(
+        Writer writer,
+        Path temporaryDirectory,
+        long memoryBudget
+    ) throws IOException {
+        final long start = System.nanoTime();
+        Path runs = Files.createTempDirectory(temporaryDirectory, "inventory-export");
+        try (ExternalRowSorter sorter = new ExternalRowSorter(runs, memoryBudget)) {
+            Iterator<Item> items = inventory.items().iterator();
+            while (items.hasNext())
+                sorter.add(items.next().toCSVRow());
+
+            CsvWriter csv = new CsvWriter(writer);
+            csv.append(INVENTORY_HEADER).append('\n');
+            sorter.sorted(row -> csv.append(row).append('\n'));
+            csv.flush();
+        } finally {
+            Files.deleteIfExists(runs);
+        }
+        metrics.record(Phase.EXPORT, System.nanoTime() - start);
+    }
+
+    private void write(
+        Stream<Item> items,
+        Writer writer,
+        Phase phase,
+        ProgressMonitor monitor
+    ) throws IOException {
+        final long start = System.nanoTime();
+        write(items, inventory.size(), writer, monitor);
+        metrics.record(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the header and a row per item, reporting progress every few thousand rows.
+     *
+     * @param size The number of items, to extrapolate the total size from.
+     * @throws CancellationException If the monitor was cancelled.
+     */
+    static void write(
+        Stream<Item> items,
+        int size,
+        Writer writer,
+        ProgressMonitor monitor
+    ) throws IOException {
+        final long lineCount = size + 1L;
+        CsvWriter csv = new CsvWriter(writer);
+        csv.append(INVENTORY_HEADER).append('\n');
+        long line = 1;
+        Iterator<Item> rows = items.iterator();
+        while (rows.hasNext()) {
+            rows.next().appendCSVRow(csv);
+            csv.append('\n');
+            line++;
+            if (line % PROGRESS_INTERVAL == 0)
+                reportProgress(monitor, line, csv.written(), csv.written() * lineCount / line);
+        }
+        csv.flush();
+        monitor.progress(line, csv.written(), csv.written());
     }
 
     public Optional<Item> getItem(String itemId) {
-        return Optional.ofNullable(inventory.get(itemId));
+        return inventory.get(itemId);
+    }
+
+    /**
+     * @return The number of items in the inventory.
+     */
+    public int size() {
+        return inventory.size();
+    }
+
+    /**
+     * @return The items with a location in the building, in item id order.
+     */
+    public Stream<Item> getItemsInBuilding(String building) {
+        return getItems(locationIndex.itemIds(building));
+    }
+
+    /**
+     * @return The items with a location in the aisle of the building, in item id order.
+     */
+    public Stream<Item> getItemsInAisle(String building, String aisle) {
+        return getItems(locationIndex.itemIds(building, aisle));
+    }
+
+    /**
+     * @return The items at the PIL, in item id order. A PIL of "-" finds the items that are only
+     * known to be somewhere in the aisle.
+     */
+    public Stream<Item> getItemsAt(String building, String aisle, String pil) {
+        return getItems(locationIndex.itemIds(building, aisle, pil));
+    }
+
+    private Stream<Item> getItems(Stream<String> itemIds) {
+        return itemIds.distinct().sorted().map(itemId -> inventory.get(itemId).get());
+    }
+
+    /**
+     * @return The units stored in the building. An item counts once toward each building it has
+     * a location in, and items with a quantity of "-" do not count.
+     */
+    public long getUnitsInBuilding(String building) {
+        return aggregates.units(building);
+    }
+
+    /**
+     * @return The units stored in the aisle, counted like {@link #getUnitsInBuilding}.
+     */
+    public long getUnitsInAisle(String building, String aisle) {
+        return aggregates.units(building, aisle);
+    }
+
+    /**
+     * @return The units of every building holding any, in order of the building names.
+     */
+    public NavigableMap<String, Long> getUnitsPerBuilding() {
+        return aggregates.unitsPerBuilding();
+    }
+
+    /**
+     * @return The units of every aisle of the building holding any, in order of the aisle names.
+     */
+    public NavigableMap<String, Long> getUnitsPerAisle(String building) {
+        return aggregates.unitsPerAisle(building);
+    }
+
+    /**
+     * @return Up to the given number of items with the largest quantities, largest first and
+     * then in item id order. Items with a quantity of "-" are left out.
+     */
+    public Stream<Item> getTopItems(int count) {
+        return aggregates.top(count);
     }
 
     public static final String INVENTORY_HEADER = "item number,pil,quantity";
-    private static final String updateHeader = "item number,operation,quantity";
+    public static final String LOCATIONS_UPDATE_HEADER = "item number,operation,pil";
+    public static final String QUANTITY_UPDATE_HEADER = "item number,operation,quantity";
+    private static final int UPDATE_TOKEN_LENGTH = 3;
+    private static final int PROGRESS_INTERVAL = 1 << 13;
 
     public static Stream<Building> parseBuildingSetup(File file) throws
-        ParserConfigurationException,
         IOException,
-        SAXException {
-        Stream.Builder<Building> buildings = Stream.builder();
-        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
-        NodeList nodeList = document.getDocumentElement().getChildNodes();
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element elem = (Element) node;
-                final String name = elem.getAttribute("name");
-                final int aisles = Integer.parseInt(
-                    elem.getElementsByTagName(
-                        "aisles"
-                    ).item(0).getChildNodes().item(0).getNodeValue()
-                );
-                Stream.Builder<Special> specials = Stream.builder();
-                NodeList specialList = elem.getElementsByTagName("special");
-                for (int j = 0; j < specialList.getLength(); j++) {
-                    Node specialNode = specialList.item(j);
-                    if (specialNode.getNodeType() == Node.ELEMENT_NODE) {
-                        Element specialElem = (Element) specialNode;
-                        final String specialName = specialElem.getAttribute("name");
-                        final String specialNick = specialElem.getAttribute("nick");
-                        specials.accept(new Special(specialName, specialNick));
-                    }
-                }
-                buildings.accept(new Building(name, aisles, specials.build()));
-            }
-        }
-        return buildings.build();
+        XMLStreamException {
+        return BuildingSetup.parse(file.toPath()).stream();
     }
 
     private static boolean isOptionalValue(String value) {
         return value.equals("-");
     }
 
+    /**
+     * Parses a quantity field, which is either a number or "-" for no quantity.
+     *
+     * @throws InventoryParseException If the field is not a valid quantity.
+     */
+    private static Optional<Integer> quantityField(CsvLine line, int index) {
+        if (line.isOptionalField(index))
+            return Optional.empty();
+        else
+            return Optional.of(checkQuantity(line.intField(index)));
+    }
+
+    /**
+     * @throws InventoryParseException If the quantity is {@link Item#NO_QUANTITY}, which would be
+     * read back as "-" from the stores and snapshots that keep quantities as plain ints.
+     */
+    private static int checkQuantity(int quantity) {
+        if (quantity == Item.NO_QUANTITY)
+            throw new InventoryParseException("Exception occurred when parsing a quantity.");
+        return quantity;
+    }
+
+    private Item parseInventoryLine(CsvLine line) {
+        return new Item(
+            line.field(0),
+            LocationParser.parse(line.field(1), locationPool),
+            quantityField(line, 2)
+        );
+    }
+
     public static Item parseInventoryLine(String itemId, String pil, String quantityString) {
         Optional<Integer> quantity;
         if (isOptionalValue(quantityString))
             quantity = Optional.empty();
         else
-            quantity = Optional.of(Integer.parseInt(quantityString));
+            quantity = Optional.of(checkQuantity(Integer.parseInt(quantityString)));
 
         return new Item(
             itemId,
@@ -324,47 +1304,62 @@ public class Inventory {
         );
     }
 
-    private static Stream<PIL> parseLocationString(String locations) {
-        if (isOptionalValue(locations)) {
-            return Stream.empty();
-        } else {
-            return Arrays.stream(
-                locations.replaceAll(" Y ", " y ").split("y")
-            ).map(location -> {
-                String[] locationTokens = location.trim().split("\\.");
-                if (locationTokens.length < 3)
-                    throw new InventoryParseException("Exception occurred when parsing locations.");
-    
-                Optional<String> pilLocation;
-                if (locationTokens[2].equals("-"))
-                    pilLocation = Optional.empty();
-                else
-                    pilLocation = Optional.of(locationTokens[2]);
-    
-                return new PIL(
-                    locationTokens[0],
-                    locationTokens[1],
-                    pilLocation
-                );
-            });
-        }
+    private static List<PIL> parseLocationString(String locations) {
+        return LocationParser.parse(locations);
     }
 
-    private static Item parseItemLocations(String itemId, String pil) {
+    private Item parseItemLocations(String itemId, String pil) {
         return new Item(
             itemId,
-            parseLocationString(pil),
+            LocationParser.parse(pil, locationPool),
             Optional.empty()
         );
     }
 
-    private static Item parseItemQuantity(String itemId, String quantity) {
-        Optional<Integer> quantityValue;
-        if (isOptionalValue(quantity))
-            quantityValue = Optional.empty();
-        else
-            quantityValue = Optional.of(Integer.parseInt(quantity));
-        return new Item(itemId, Stream.empty(), quantityValue);
+    private static Item parseItemQuantity(CsvLine line) {
+        return new Item(line.field(0), Stream.empty(), quantityField(line, 2));
+    }
+    private enum UpdateType {
+        LOCATIONS(LOCATIONS_UPDATE_HEADER),
+        QUANTITY(QUANTITY_UPDATE_HEADER);
+
+        private final String header;
+
+        UpdateType(String header) {
+            this.header = header;
+        }
+    }
+
+    /**
+     * Result of parsing one line of an inventory or update file, kept apart from applying it so
+     * lines can be parsed in parallel and still be applied in file order.
+     */
+    private static class ParsedLine {
+        enum Error {
+            NONE,
+            MISSING_VALUES,
+            INVALID_FORMAT,
+            UNKNOWN_BUILDING,
+            UNKNOWN_AISLE
+        }
+
+        final Item item;
+        final String operation;
+        final Error error;
+
+        private ParsedLine(Item item, String operation, Error error) {
+            this.item = item;
+            this.operation = operation;
+            this.error = error;
+        }
+
+        static ParsedLine item(Item item, String operation) {
+            return new ParsedLine(item, operation, Error.NONE);
+        }
+
+        static ParsedLine error(Error error) {
+            return new ParsedLine(null, null, error);
+        }
     }
 }
 
@@ -0,0 +1,197 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Totals of the units stored per building and per aisle, and the items ordered by quantity, kept
+ * in step with the inventory by listening to its changes so they are answered without a scan.
+ *
+ * The quantity of an item counts once toward every building and every aisle it has a location
+ * in, no matter how many of its locations are in the same building or aisle. Items with a
+ * quantity of "-" hold no units and are left out of the totals and of the ranking.
+ *
+ * Like the {@link LocationIndex} the aggregates are built from the inventory on first use, and
+ * changes made before they are built are ignored since the build picks them up.
+ */
+final class InventoryAggregates implements InventoryListener {
+    /**
+     * Most units first, ties broken by item id so every item has its own place.
+     */
+    private static final Comparator<Item> BY_QUANTITY = Comparator
+        .comparingInt((Item item) -> item.getQuantity().get())
+        .reversed()
+        .thenComparing(Item::getItemId);
+
+    private final Supplier<Stream<Item>> items;
+    private final Map<String, Long> buildings = new HashMap<>();
+    private final Map<String, Map<String, Long>> aisles = new HashMap<>();
+    private final NavigableSet<Item> ranking = new TreeSet<>(BY_QUANTITY);
+    private boolean built;
+
+    /**
+     * @param items Supplies every item of the inventory to build the aggregates from.
+     */
+    public InventoryAggregates(Supplier<Stream<Item>> items) {
+        this.items = items;
+    }
+
+    /**
+     * Drops the aggregates after the inventory was replaced without notifying listeners, they
+     * are built again on the next query.
+     */
+    public void invalidate() {
+        buildings.clear();
+        aisles.clear();
+        ranking.clear();
+        built = false;
+    }
+
+    private void build() {
+        if (built)
+            return;
+
+        items.get().forEach(item -> add(item, 1));
+        built = true;
+    }
+
+    @Override
+    public void itemPut(Optional<Item> previous, Item item) {
+        if (!built)
+            return;
+
+        previous.ifPresent(replaced -> add(replaced, -1));
+        add(item, 1);
+    }
+
+    /**
+     * Only builds the items while the aggregates are built.
+     */
+    @Override
+    public void itemUpdated(ItemUpdate update) {
+        if (!built)
+            return;
+
+        add(update.getPrevious(), -1);
+        add(update.getItem(), 1);
+    }
+
+    @Override
+    public void itemRemoved(Item item) {
+        if (built)
+            add(item, -1);
+    }
+
+    @Override
+    public void cleared() {
+        invalidate();
+        built = true;
+    }
+
+    /**
+     * Adds the units of the item to its buildings and aisles, or takes them away.
+     *
+     * @param sign 1 to add the item, -1 to take it away.
+     */
+    private void add(Item item, int sign) {
+        if (!item.getQuantity().isPresent())
+            return;
+
+        if (sign > 0)
+            ranking.add(item);
+        else
+            ranking.remove(item);
+        final long units = (long) sign * item.getQuantity().get();
+        if (units == 0)
+            return;
+
+        List<PIL> locations = item.getLocationList();
+        for (int i = 0; i < locations.size(); i++) {
+            final PIL location = locations.get(i);
+            if (!seenBefore(locations, i, false))
+                addUnits(buildings, location.getBuilding(), units);
+            if (!seenBefore(locations, i, true)) {
+                Map<String, Long> buildingAisles = aisles.computeIfAbsent(
+                    location.getBuilding(),
+                    building -> new HashMap<>()
+                );
+                addUnits(buildingAisles, location.getAisle(), units);
+                if (buildingAisles.isEmpty())
+                    aisles.remove(location.getBuilding());
+            }
+        }
+    }
+
+    /**
+     * @return True if a location before the given one is in the same building, and with
+     * {@code sameAisle} also in the same aisle. Items have few locations, so a scan is cheaper
+     * than a set.
+     */
+    private static boolean seenBefore(List<PIL> locations, int index, boolean sameAisle) {
+        final PIL location = locations.get(index);
+        for (int i = 0; i < index; i++) {
+            final PIL earlier = locations.get(i);
+            if (earlier.getBuilding().equals(location.getBuilding()) &&
+                (!sameAisle || earlier.getAisle().equals(location.getAisle())))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Entries that drop to zero units are removed so the maps only hold the occupied places.
+     */
+    private static void addUnits(Map<String, Long> totals, String key, long units) {
+        totals.merge(key, units, (total, delta) -> total + delta == 0 ? null : total + delta);
+    }
+
+    /**
+     * @return The units stored in the building.
+     */
+    public long units(String building) {
+        build();
+        return buildings.getOrDefault(building, 0L);
+    }
+
+    /**
+     * @return The units stored in the aisle.
+     */
+    public long units(String building, String aisle) {
+        build();
+        return aisles.getOrDefault(building, Collections.emptyMap()).getOrDefault(aisle, 0L);
+    }
+
+    /**
+     * @return The units per building holding any, in order of the building names.
+     */
+    public NavigableMap<String, Long> unitsPerBuilding() {
+        build();
+        return new TreeMap<>(buildings);
+    }
+
+    /**
+     * @return The units per aisle of the building holding any, in order of the aisle names.
+     */
+    public NavigableMap<String, Long> unitsPerAisle(String building) {
+        build();
+        return new TreeMap<>(aisles.getOrDefault(building, Collections.emptyMap()));
+    }
+
+    /**
+     * @return Up to the given number of items with the largest quantities, largest first.
+     */
+    public Stream<Item> top(int count) {
+        build();
+        return ranking.stream().limit(count);
+    }
+}
@@ -0,0 +1,358 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLStreamException;
+
+import com.zingkg.shippinginventorymanager.InventoryError.Category;
+
+/**
+ * Command line front end over the inventory in the internal directory, for use without a display.
+ * It never touches AWT or Swing, so it runs on headless machines and starts about as fast as the
+ * inventory can be restored.
+ *
+ * <pre>
+ * load file                        replaces the inventory with the file
+ * update-locations file            applies a location update file
+ * update-quantity file             applies a quantity update file
+ * batch file...                    applies update files of either kind, all or nothing
+ * export file [megabytes]          writes the inventory in item id order, "-" for standard out,
+ *                                  sorting it within the megabytes through temporary files
+ * item item-number                 prints the item
+ * locate building[.aisle[.pil]]    prints the items stored at the location, in item id order
+ * report count                     prints the units per building and aisle and the count items
+ *                                  with the largest quantities
+ * watch folder                     applies update files dropped into the folder until stopped
+ * </pre>
+ *
+ * Files are read whether they are plain or compressed with gzip or zlib. An export is compressed
+ * with gzip if its name ends in {@code .gz} and with zlib if it ends in {@code .zz}, see
+ * {@link Compression}.
+ *
+ * Commands that apply a file write their errors to the error file and print a summary of
+ * {@code key=value} lines: the status, the number of errors and warnings, the count of each
+ * category that occurred and the path of the error file. Update files applied before are skipped
+ * without being read, each is printed as a {@code skipped} line, and if every file was skipped
+ * the status is {@code skipped}. A command that fails outright only prints the status
+ * {@code failed}, with the reason on standard error. The exit status tells how it went:
+ *
+ * <pre>
+ * 0   done without errors, warnings may have been reported
+ * 1   failed, for example because a file could not be read
+ * 2   the command line was not understood
+ * 3   done, but some lines had errors and were skipped, or a batch was rejected
+ * 4   the item or location was not found
+ * </pre>
+ *
+ * While watching a folder one line is printed per file, giving the file it was moved to, whether
+ * it was applied, rejected or skipped and its number of errors and warnings. See
+ * {@link UpdateFolder}.
+ */
+public class InventoryCommand {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_ERRORS = 3;
+    static final int EXIT_NOT_FOUND = 4;
+    private static final long WATCH_SETTLE_MILLIS = 1000;
+
+    private final Inventory inventory;
+    private final Optional<InventoryJournal> journal;
+    private final Path errorFile;
+    private final PrintStream out;
+
+    InventoryCommand(Inventory inventory, Path errorFile, PrintStream out) {
+        this(inventory, Optional.empty(), errorFile, out);
+    }
+
+    /**
+     * @param journal Committed after every file applied while watching a folder, and keeps track
+     * of the update files applied so they are not applied twice.
+     */
+    InventoryCommand(
+        Inventory inventory,
+        Optional<InventoryJournal> journal,
+        Path errorFile,
+        PrintStream out
+    ) {
+        this.inventory = inventory;
+        this.journal = journal;
+        this.errorFile = errorFile;
+        this.out = out;
+    }
+
+    private interface FileAction {
+        void apply(ErrorSink errors) throws IOException;
+    }
+
+    private interface UpdateAction {
+        /**
+         * @return True if the files were applied, false if they were rejected.
+         */
+        boolean apply(List<Path> files, ErrorSink errors) throws IOException;
+    }
+
+    /**
+     * Runs a single command against the inventory.
+     *
+     * @return The exit status of the command.
+     */
+    int run(String... args) throws IOException {
+        if (args.length < 2)
+            return usage();
+
+        switch (args[0]) {
+            case "load":
+                return args.length == 2 ?
+                    apply(errors -> inventory.loadInventory(Paths.get(args[1]), errors)) :
+                    usage();
+            case "update-locations":
+                return args.length == 2 ?
+                    update(
+                        Collections.singletonList(Paths.get(args[1])),
+                        (files, errors) -> inventory.updateLocations(files.get(0), errors)
+                    ) :
+                    usage();
+            case "update-quantity":
+                return args.length == 2 ?
+                    update(
+                        Collections.singletonList(Paths.get(args[1])),
+                        (files, errors) -> inventory.updateQuantity(files.get(0), errors)
+                    ) :
+                    usage();
+            case "batch":
+                List<Path> files = Arrays.stream(args, 1, args.length)
+                    .map(Paths::get)
+                    .collect(Collectors.toList());
+                return update(files, inventory::updateBatch);
+            case "export":
+                if (args.length == 2)
+                    return export(args[1], Optional.empty());
+                if (args.length == 3 && megabytes(args[2]).isPresent())
+                    return export(args[1], megabytes(args[2]));
+                return usage();
+            case "item":
+                return args.length == 2 ? item(args[1]) : usage();
+            case "locate":
+                return args.length == 2 ? locate(args[1]) : usage();
+            case "report":
+                return args.length == 2 ? report(args[1]) : usage();
+            case "watch":
+                return args.length == 2 ? watch(Paths.get(args[1])) : usage();
+            default:
+                return usage();
+        }
+    }
+
+    private int apply(FileAction action) throws IOException {
+        try (ErrorReport errors = new ErrorReport(errorFile, 0)) {
+            action.apply(errors);
+            return summary(errors, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Applies the update files, skipping those the journal has seen applied before.
+     */
+    private int update(List<Path> files, UpdateAction action) throws IOException {
+        try (ErrorReport errors = new ErrorReport(errorFile, 0)) {
+            final List<Path> skipped;
+            if (journal.isPresent()) {
+                skipped = journal.get().applyNew(files, fresh -> action.apply(fresh, errors));
+            } else {
+                action.apply(files, errors);
+                skipped = Collections.emptyList();
+            }
+            if (skipped.size() == files.size()) {
+                out.println("status=skipped");
+                skipped.forEach(file -> out.println("skipped=" + file));
+                return EXIT_OK;
+            }
+            return summary(errors, skipped);
+        }
+    }
+
+    private int summary(ErrorReport errors, List<Path> skipped) {
+        final long failures = errors.getFailures();
+        out.println("status=" + (failures == 0 ? "ok" : "errors"));
+        out.println("errors=" + failures);
+        out.println("warnings=" + (errors.getTotal() - failures));
+        for (Category category : Category.values()) {
+            if (errors.getCount(category) > 0)
+                out.println(category + "=" + errors.getCount(category));
+        }
+        skipped.forEach(file -> out.println("skipped=" + file));
+        out.println("errorFile=" + errorFile);
+        return failures == 0 ? EXIT_OK : EXIT_ERRORS;
+    }
+
+    /**
+     * @param memoryBudget Megabytes to sort the export in, spilling to temporary files, or empty
+     * to walk the inventory in item id order.
+     */
+    private int export(String file, Optional<Long> memoryBudget) throws IOException {
+        if (file.equals("-")) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            export(writer, memoryBudget);
+        } else {
+            try (Writer writer = Compression.newBufferedWriter(Paths.get(file))) {
+                export(writer, memoryBudget);
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private void export(Writer writer, Optional<Long> memoryBudget) throws IOException {
+        if (memoryBudget.isPresent()) {
+            inventory.exportInventory(
+                writer,
+                Paths.get(System.getProperty("java.io.tmpdir")),
+                memoryBudget.get() << 20
+            );
+        } else {
+            inventory.exportInventory(writer);
+        }
+    }
+
+    private static Optional<Long> megabytes(String value) {
+        try {
+            final long megabytes = Long.parseLong(value);
+            return megabytes > 0 ? Optional.of(megabytes) : Optional.empty();
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private int item(String itemId) {
+        Optional<Item> item = inventory.getItem(itemId);
+        if (!item.isPresent())
+            return EXIT_NOT_FOUND;
+
+        out.println(Inventory.INVENTORY_HEADER);
+        out.println(item.get().toCSVRow());
+        return EXIT_OK;
+    }
+
+    private int locate(String location) {
+        String[] tokens = location.split("\\.", -1);
+        final Stream<Item> items;
+        switch (tokens.length) {
+            case 1:
+                items = inventory.getItemsInBuilding(tokens[0]);
+                break;
+            case 2:
+                items = inventory.getItemsInAisle(tokens[0], tokens[1]);
+                break;
+            case 3:
+                items = inventory.getItemsAt(tokens[0], tokens[1], tokens[2]);
+                break;
+            default:
+                return usage();
+        }
+        List<String> rows = items.map(Item::toCSVRow).collect(Collectors.toList());
+        if (rows.isEmpty())
+            return EXIT_NOT_FOUND;
+
+        out.println(Inventory.INVENTORY_HEADER);
+        rows.forEach(out::println);
+        return EXIT_OK;
+    }
+
+    private int report(String count) {
+        final int top;
+        try {
+            top = Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            return usage();
+        }
+        if (top < 0)
+            return usage();
+
+        inventory.getUnitsPerBuilding().forEach((building, units) -> {
+            out.println("building=" + building + " units=" + units);
+            inventory.getUnitsPerAisle(building).forEach((aisle, aisleUnits) ->
+                out.println("aisle=" + building + '.' + aisle + " units=" + aisleUnits)
+            );
+        });
+        inventory.getTopItems(top).forEach(item ->
+            out.println("top=" + item.getItemId() + " quantity=" + item.getQuantity().get())
+        );
+        return EXIT_OK;
+    }
+
+    private int watch(Path folder) throws IOException {
+        UpdateFolder updates = new UpdateFolder(
+            inventory,
+            journal,
+            folder,
+            WATCH_SETTLE_MILLIS,
+            result -> {
+                if (journal.isPresent())
+                    journal.get().commit();
+                out.println(
+                    "file=" + result.getFile() +
+                    " status=" + status(result) +
+                    " errors=" + result.getFailures() +
+                    " warnings=" + result.getWarnings()
+                );
+                out.flush();
+            }
+        );
+        try {
+            updates.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return EXIT_OK;
+    }
+
+    private static String status(UpdateFolder.Result result) {
+        if (result.isSkipped())
+            return "skipped";
+        return result.isApplied() ? "applied" : "rejected";
+    }
+
+    private static int usage() {
+        System.err.println(
+            "Usage: load file | update-locations file | update-quantity file | batch file... |\n" +
+            "       export file [megabytes] | item item-number |\n" +
+            "       locate building[.aisle[.pil]] | report count | watch folder"
+        );
+        return EXIT_USAGE;
+    }
+
+    public static void main(String[] args) {
+        int status;
+        try (InventoryWorkspace workspace = InventoryWorkspace.open(error ->
+            System.err.println(error.getMessage())
+        )) {
+            status = new InventoryCommand(
+                workspace.getInventory(),
+                Optional.of(workspace.getJournal()),
+                Paths.get(InventoryWorkspace.ERROR_FILE_PATH),
+                System.out
+            ).run(args);
+        } catch (IOException | XMLStreamException e) {
+            System.out.println("status=failed");
+            System.err.println(e.getMessage());
+            status = EXIT_FAILED;
+        } catch (RuntimeException e) {
+            System.out.println("status=failed");
+            System.err.println(e);
+            status = EXIT_FAILED;
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,60 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * An error found while applying a file to the inventory, with the category it is counted under
+ * and the message shown to the user.
+ */
+public final class InventoryError {
+    public enum Category {
+        MISSING_HEADER,
+        MISSING_VALUES,
+        INVALID_FORMAT,
+        UNKNOWN_BUILDING,
+        UNKNOWN_AISLE,
+        UNKNOWN_OPERATION,
+        UNKNOWN_ITEM,
+        DUPLICATE_ITEM(true),
+        BATCH_REJECTED,
+        JOURNAL_ENTRY,
+        UNREADABLE_FILE,
+        COMPACTION_FAILED;
+
+        private final boolean warning;
+
+        Category() {
+            this(false);
+        }
+
+        Category(boolean warning) {
+            this.warning = warning;
+        }
+
+        /**
+         * @return True if errors of this category are reported but the line was still applied.
+         */
+        public boolean isWarning() {
+            return warning;
+        }
+    }
+
+    private final Category category;
+    private final String message;
+
+    public InventoryError(Category category, String message) {
+        this.category = category;
+        this.message = message;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
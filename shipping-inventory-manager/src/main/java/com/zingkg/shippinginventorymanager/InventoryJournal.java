@@ -0,0 +1,472 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Write ahead journal kept next to the inventory snapshot. Instead of rewriting the whole snapshot
+ * after every action, each change applied to the inventory is appended to the journal as a single
+ * line:
+ *
+ * <pre>
+ * P,item number,pil,quantity   the item was added or replaced
+ * Q,item number,quantity       the quantity of the item was changed
+ * D,item number                the item was deleted
+ * C                            the inventory was cleared for a full load
+ * A,digest                     the update file with the SHA-256 digest was applied
+ * </pre>
+ *
+ * Opening the journal replays it on top of the snapshot. Once the journal grows past a threshold
+ * the current inventory is written out as a new {@link InventorySnapshot} on a background thread
+ * and the journal starts over.
+ *
+ * While a compaction is running the journal it replaces is kept as {@code <journal>.compacting}.
+ * That file is only deleted after the new snapshot has been moved into place, and replaying it on
+ * top of either the old or the new snapshot gives the same inventory, so a crash at any point
+ * leaves a recoverable state.
+ *
+ * Once the new snapshot is in place the journal it replaced is kept as
+ * {@code <snapshot>.<generation>.journal}, which turns the generation before into this one. If
+ * the newest snapshot turns out to be corrupt, the inventory is restored from an older generation
+ * and the journals of every generation after it are replayed ahead of the current journal. The
+ * generation restored from, or else the one written before the newest, is kept along with the
+ * generations and journals after it, the older ones are removed.
+ *
+ * Applied update files are written to the journal next to their changes, so they are committed
+ * together. Replaying the journal adds them to the {@link UpdateLedger} again, which makes a file
+ * applied right before a crash known as applied even if the ledger did not get to save it. The
+ * ledger is committed before a compaction can drop the entries of the journal.
+ *
+ * A compaction that fails is reported to the {@link ErrorSink} the journal was opened with, and
+ * does not fail the commit that finds it. Its journal is kept and the compaction is retried the
+ * next time the journal grows past the threshold.
+ */
+final class InventoryJournal implements InventoryListener, Closeable {
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 8 << 20;
+
+    private final Inventory inventory;
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Path compactingFile;
+    private final long compactionThreshold;
+    private final Optional<UpdateLedger> ledger;
+    private final ErrorSink errors;
+    private long keptGeneration;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Inventory journal compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> compaction = CompletableFuture.completedFuture(null);
+    private FileChannel channel;
+    private Writer writer;
+
+    /**
+     * @param snapshotFile Base path of the binary snapshots, the journal is kept next to it.
+     */
+    private InventoryJournal(
+        Inventory inventory,
+        Path snapshotFile,
+        long compactionThreshold,
+        Optional<UpdateLedger> ledger,
+        ErrorSink errors,
+        long keptGeneration
+    ) {
+        this.inventory = inventory;
+        this.snapshotFile = snapshotFile;
+        this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+        this.compactingFile = journalFile.resolveSibling(journalFile.getFileName() + ".compacting");
+        this.compactionThreshold = compactionThreshold;
+        this.ledger = ledger;
+        this.errors = errors;
+        this.keptGeneration = keptGeneration;
+    }
+
+    /**
+     * Replays any journal found next to the snapshot into the inventory, which should already hold
+     * the snapshot, and starts journaling further changes to the inventory.
+     *
+     * @param errors Receives the entries that could not be replayed and the compactions that
+     * failed.
+     */
+    public static InventoryJournal open(
+        Inventory inventory,
+        Path snapshotFile,
+        long compactionThreshold,
+        ErrorSink errors
+    ) throws IOException {
+        return open(inventory, snapshotFile, compactionThreshold, Optional.empty(), errors);
+    }
+
+    /**
+     * Opens the journal like {@link #open(Inventory, Path, long, ErrorSink)} and keeps track of
+     * the update files applied in the ledger.
+     *
+     * @param ledger Receives the applied update files of the replayed entries and is committed
+     * along with the journal.
+     */
+    public static InventoryJournal open(
+        Inventory inventory,
+        Path snapshotFile,
+        long compactionThreshold,
+        Optional<UpdateLedger> ledger,
+        ErrorSink errors
+    ) throws IOException {
+        return open(
+            inventory,
+            snapshotFile,
+            InventorySnapshot.latestGeneration(snapshotFile),
+            compactionThreshold,
+            ledger,
+            errors
+        );
+    }
+
+    /**
+     * Opens the journal like {@link #open(Inventory, Path, long, Optional, ErrorSink)} for an
+     * inventory restored from an older generation than the newest, for example because the newest
+     * one is corrupt. The journals of the generations after it are replayed first.
+     *
+     * @param generation The generation the inventory holds, 0 if it was loaded from a file.
+     */
+    public static InventoryJournal open(
+        Inventory inventory,
+        Path snapshotFile,
+        long generation,
+        long compactionThreshold,
+        Optional<UpdateLedger> ledger,
+        ErrorSink errors
+    ) throws IOException {
+        InventoryJournal journal = new InventoryJournal(
+            inventory,
+            snapshotFile,
+            compactionThreshold,
+            ledger,
+            errors,
+            generation
+        );
+        final long latest = InventorySnapshot.latestGeneration(snapshotFile);
+        inventory.change(() -> {
+            long replayed = generation;
+            while (replayed < latest && Files.exists(journal.generationJournal(replayed + 1))) {
+                journal.replay(journal.generationJournal(replayed + 1), errors);
+                replayed++;
+            }
+            if (replayed < latest) {
+                errors.accept(
+                    InventoryError.Category.JOURNAL_ENTRY,
+                    "The changes of snapshot generations " + (replayed + 1) + " to " + latest +
+                    " could not be restored, their journals are missing."
+                );
+            }
+            journal.replay(journal.compactingFile, errors);
+            journal.replay(journal.journalFile, errors);
+        });
+        journal.openWriter();
+        inventory.addListener(journal);
+        return journal;
+    }
+
+    /**
+     * @return The journal that turns the generation before the given one into it.
+     */
+    private Path generationJournal(long generation) {
+        return snapshotFile.resolveSibling(
+            snapshotFile.getFileName() + "." + generation + ".journal"
+        );
+    }
+
+    private void replay(Path file, ErrorSink errors) throws IOException {
+        if (!Files.exists(file))
+            return;
+
+        truncateTornEntry(file);
+        try (Stream<String> lines = Files.lines(file)) {
+            Iterator<String> entries = lines.iterator();
+            int lineNumber = 1;
+            while (entries.hasNext()) {
+                try {
+                    applyEntry(entries.next());
+                } catch (InventoryParseException e) {
+                    errors.accept(
+                        InventoryError.Category.JOURNAL_ENTRY,
+                        "Replaying " + file.getFileName() + " line " + lineNumber +
+                        " has an invalid format."
+                    );
+                }
+                lineNumber++;
+            }
+        }
+    }
+
+    /**
+     * Drops a final entry without a line break, which is left behind by a crash in the middle of
+     * a write and may otherwise parse as a different, shorter entry.
+     */
+    private static void truncateTornEntry(Path file) throws IOException {
+        try (FileChannel journal = FileChannel.open(
+            file,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        )) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            long end = journal.size();
+            while (end > 0) {
+                buffer.clear();
+                journal.read(buffer, end - 1);
+                if (buffer.get(0) == '\n')
+                    break;
+                end--;
+            }
+            if (end < journal.size())
+                journal.truncate(end);
+        }
+    }
+
+    private void applyEntry(String entry) {
+        if (entry.equals("C"))
+            inventory.clearItems();
+        else if (entry.startsWith("P,"))
+            inventory.putItem(inventory.parseItemRow(entry.substring(2)));
+        else if (entry.startsWith("Q,"))
+            inventory.replayQuantity(entry.substring(2));
+        else if (entry.startsWith("D,") && entry.length() > 2)
+            inventory.removeItem(entry.substring(2));
+        else if (entry.startsWith("A,"))
+            ledger.ifPresent(applied -> applied.applied(UpdateLedger.fromHex(entry.substring(2))));
+        else
+            throw new InventoryParseException("Exception occurred when parsing journal entry.");
+    }
+
+    private void openWriter() throws IOException {
+        channel = FileChannel.open(
+            journalFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND
+        );
+        writer = new BufferedWriter(
+            new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8)
+        );
+    }
+
+    @Override
+    public void itemPut(Optional<Item> previous, Item item) {
+        append("P," + item.toCSVRow());
+    }
+
+    /**
+     * A change of the quantity is written on its own, so the locations of the item are not read.
+     */
+    @Override
+    public void itemUpdated(ItemUpdate update) {
+        if (update.isLocationUpdate()) {
+            append("P," + update.getItem().toCSVRow());
+        } else {
+            append(
+                "Q," + update.getItemId() + ',' +
+                update.getQuantity().map(String::valueOf).orElse("-")
+            );
+        }
+    }
+
+    @Override
+    public void itemRemoved(Item item) {
+        append("D," + item.getItemId());
+    }
+
+    @Override
+    public void cleared() {
+        append("C");
+    }
+
+    private void append(String entry) {
+        try {
+            writer.write(entry);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return True if the ledger knows the update file with the digest as applied.
+     */
+    public boolean isApplied(byte[] digest) {
+        return ledger.isPresent() && ledger.get().isApplied(digest);
+    }
+
+    /**
+     * Records the update file with the digest as applied, to be committed with its changes.
+     */
+    public void applied(byte[] digest) {
+        append("A," + UpdateLedger.toHex(digest));
+        ledger.ifPresent(applied -> applied.applied(digest));
+    }
+
+    interface Update {
+        /**
+         * @return True if the files were applied, false if they were rejected.
+         */
+        boolean apply(List<Path> files) throws IOException;
+    }
+
+    /**
+     * Applies the update files that were not applied before, and records them as applied if the
+     * update accepted them. Files are told apart by their content alone, so a file that is
+     * dropped again under another name is skipped as well, and so is the second of two identical
+     * files. Skipped files are only read to hash them.
+     *
+     * @return The files that were skipped, in the order given.
+     */
+    public List<Path> applyNew(List<Path> files, Update update) throws IOException {
+        List<Path> fresh = new ArrayList<>();
+        List<byte[]> digests = new ArrayList<>();
+        List<Path> skipped = new ArrayList<>();
+        Set<ByteBuffer> seen = new HashSet<>();
+        for (Path file : files) {
+            final byte[] digest = UpdateLedger.digest(file);
+            if (isApplied(digest) || !seen.add(ByteBuffer.wrap(digest))) {
+                skipped.add(file);
+            } else {
+                fresh.add(file);
+                digests.add(digest);
+            }
+        }
+        if (!fresh.isEmpty() && update.apply(fresh))
+            digests.forEach(this::applied);
+        return skipped;
+    }
+
+    /**
+     * Makes every change so far durable and starts a compaction if the journal is large enough
+     * and no compaction is running. The ledger is committed after the journal, so it never holds a
+     * file whose changes are lost.
+     */
+    public void commit() throws IOException {
+        writer.flush();
+        channel.force(false);
+        if (ledger.isPresent())
+            ledger.get().commit();
+        if (compaction.isDone()) {
+            // Reports the compaction that finished if it failed, without waiting.
+            awaitCompaction();
+            if (channel.size() >= compactionThreshold)
+                compact();
+        }
+    }
+
+    /**
+     * Captures the inventory and writes it out as the new snapshot in the background. With the
+     * {@link StorageEngine#PERSISTENT} engine the capture takes O(1), and the items are only
+     * walked by the compaction thread. A running compaction is waited for first, the next one
+     * never starts before it has finished.
+     */
+    public void compact() throws IOException {
+        awaitCompaction();
+        InventoryStore items = inventory.snapshot();
+        writer.close();
+        // The applied files of the journal are dropped along with it once the snapshot is written.
+        if (ledger.isPresent())
+            ledger.get().commit();
+        if (Files.exists(compactingFile)) {
+            // An earlier compaction failed, keep its entries ahead of the current ones.
+            append(journalFile, compactingFile);
+            Files.delete(journalFile);
+        } else {
+            Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+        openWriter();
+        compaction = compactor.submit(() -> {
+            writeSnapshot(items);
+            return null;
+        });
+    }
+
+    private static void append(Path source, Path target) throws IOException {
+        try (
+            FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel output = FileChannel.open(
+                target,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+            )
+        ) {
+            final long size = input.size();
+            for (long position = 0; position < size; )
+                position += input.transferTo(position, size - position, output);
+            output.force(false);
+        }
+    }
+
+    private void writeSnapshot(InventoryStore items) throws IOException {
+        Path written = InventorySnapshot.write(snapshotFile, items.size(), items.sortedItems());
+        final long generation = InventorySnapshot.generationOf(written);
+        Files.move(compactingFile, generationJournal(generation), StandardCopyOption.ATOMIC_MOVE);
+
+        // Keep one generation to fall back to and the journals needed to catch up from it.
+        InventorySnapshot.deleteGenerationsBefore(snapshotFile, keptGeneration);
+        for (long old = keptGeneration; old > 0 && Files.exists(generationJournal(old)); old--)
+            Files.delete(generationJournal(old));
+        keptGeneration = generation;
+    }
+
+    /**
+     * Waits for a running compaction to finish and reports it if it failed. Its journal is kept
+     * and replayed next time.
+     *
+     * @throws InterruptedIOException If the thread was interrupted while the compaction still
+     * runs.
+     */
+    public void awaitCompaction() throws InterruptedIOException {
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the journal is compacted.");
+        } catch (ExecutionException e) {
+            errors.accept(
+                InventoryError.Category.COMPACTION_FAILED,
+                "The journal could not be compacted and is compacted again later: " + e.getCause()
+            );
+        }
+        compaction = CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inventory.removeListener(this);
+        try {
+            commit();
+            awaitCompaction();
+        } finally {
+            writer.close();
+            compactor.shutdown();
+        }
+    }
+}
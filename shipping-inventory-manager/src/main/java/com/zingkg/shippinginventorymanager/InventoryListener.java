@@ -0,0 +1,34 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Optional;
+
+/**
+ * Notified of every change applied to an {@link Inventory}, in the order the changes are made.
+ */
+interface InventoryListener {
+    /**
+     * The item was added or replaced an item with the same id.
+     *
+     * @param previous The item that was replaced, if there was one.
+     */
+    void itemPut(Optional<Item> previous, Item item);
+
+    /**
+     * The quantity or the locations of a stored item were changed in place. Listeners that only
+     * need the quantities or the location counts override this to leave the items unbuilt, by
+     * default it is handled as a put of the whole item.
+     */
+    default void itemUpdated(ItemUpdate update) {
+        itemPut(Optional.of(update.getPrevious()), update.getItem());
+    }
+
+    /**
+     * The item was removed. Only called if the item existed.
+     */
+    void itemRemoved(Item item);
+
+    /**
+     * Every item was removed ahead of loading a whole new inventory.
+     */
+    void cleared();
+}
@@ -0,0 +1,427 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.zingkg.shippinginventorymanager.InventoryError.Category;
+
+/**
+ * Collects the {@link InventoryMetricsMXBean} figures of one {@link Inventory}. The inventory
+ * opens an {@link Operation} around each of its operations, nested calls fold into the outermost
+ * one, and the time spent in each phase of the operation is recorded as one sample once it ends.
+ *
+ * Item and location counts follow the changes the inventory makes as a listener, so reading them
+ * never touches the items from the monitoring thread.
+ */
+final class InventoryMetrics implements InventoryMetricsMXBean, InventoryListener {
+    static final String OBJECT_NAME = "com.zingkg.shippinginventorymanager:type=Inventory";
+    private static final int BUCKETS = 32;
+    private static final int SAMPLE_INTERVAL = 64;
+
+    enum Phase {
+        READ,
+        PARSE,
+        VALIDATE,
+        APPLY,
+        SAVE,
+        EXPORT
+    }
+
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final Map<Category, LongAdder> errors = new EnumMap<>(Category.class);
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong locations = new AtomicLong();
+    private volatile LongSupplier snapshotLocations = () -> 0;
+    private volatile long lastBatchLines;
+    private volatile long lastBatchBytes;
+    private Operation operation;
+    private int depth;
+
+    InventoryMetrics() {
+        for (Phase phase : Phase.values())
+            phases.put(phase, new Histogram());
+        for (Category category : Category.values())
+            errors.put(category, new LongAdder());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing metrics registered earlier.
+     */
+    void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(this, name);
+    }
+
+    void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+    }
+
+    /**
+     * Starts an operation, or joins the one already running. Every call has to be paired with a
+     * call to {@link #end()}, and both are only called from the thread changing the inventory.
+     */
+    Operation begin() {
+        if (depth++ == 0)
+            operation = new Operation();
+        return operation;
+    }
+
+    /**
+     * Ends an operation and records its phases once the outermost operation ends.
+     *
+     * @return True if the outermost operation ended.
+     */
+    boolean end() {
+        if (--depth > 0)
+            return false;
+
+        operation.record();
+        operation = null;
+        return true;
+    }
+
+    /**
+     * @return A sink counting every error before handing it on.
+     */
+    ErrorSink counting(ErrorSink sink) {
+        return error -> {
+            errors.get(error.getCategory()).increment();
+            sink.accept(error);
+        };
+    }
+
+    /**
+     * Records a phase that ran outside of an operation.
+     */
+    void record(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    /**
+     * @return The lines, timing the phase from the first line taken until the last one was.
+     */
+    Stream<String> timed(Phase phase, Stream<String> lines) {
+        Iterator<String> iterator = lines.iterator();
+        Iterator<String> timed = new Iterator<String>() {
+            private long start = -1;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (start < 0)
+                    start = System.nanoTime();
+                final boolean hasNext = iterator.hasNext();
+                if (!hasNext && !done) {
+                    done = true;
+                    record(phase, System.nanoTime() - start);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public String next() {
+                if (start < 0)
+                    start = System.nanoTime();
+                return iterator.next();
+            }
+        };
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(timed, Spliterator.ORDERED | Spliterator.NONNULL),
+            false
+        ).onClose(lines::close);
+    }
+
+    /**
+     * The inventory now serves the items of the snapshot, which are counted when first asked for.
+     */
+    void snapshotOpened(InventorySnapshot snapshot) {
+        items.set(snapshot.size());
+        locations.set(0);
+        snapshotLocations = snapshot::locationCount;
+    }
+
+    @Override
+    public void itemPut(Optional<Item> previous, Item item) {
+        if (previous.isPresent())
+            locations.addAndGet(-previous.get().getLocationList().size());
+        else
+            items.incrementAndGet();
+        locations.addAndGet(item.getLocationList().size());
+    }
+
+    @Override
+    public void itemUpdated(ItemUpdate update) {
+        locations.addAndGet(update.getLocationCount() - update.getPreviousLocationCount());
+    }
+
+    @Override
+    public void itemRemoved(Item item) {
+        items.decrementAndGet();
+        locations.addAndGet(-item.getLocationList().size());
+    }
+
+    @Override
+    public void cleared() {
+        items.set(0);
+        locations.set(0);
+        snapshotLocations = () -> 0;
+    }
+
+    @Override
+    public PhaseStatistics getRead() {
+        return phases.get(Phase.READ).statistics();
+    }
+
+    @Override
+    public PhaseStatistics getParse() {
+        return phases.get(Phase.PARSE).statistics();
+    }
+
+    @Override
+    public PhaseStatistics getValidate() {
+        return phases.get(Phase.VALIDATE).statistics();
+    }
+
+    @Override
+    public PhaseStatistics getApply() {
+        return phases.get(Phase.APPLY).statistics();
+    }
+
+    @Override
+    public PhaseStatistics getSave() {
+        return phases.get(Phase.SAVE).statistics();
+    }
+
+    @Override
+    public PhaseStatistics getExport() {
+        return phases.get(Phase.EXPORT).statistics();
+    }
+
+    @Override
+    public int getItemCount() {
+        return (int) items.get();
+    }
+
+    @Override
+    public long getLocationCount() {
+        return snapshotLocations.getAsLong() + locations.get();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        errors.forEach((category, count) -> counts.put(category.name(), count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getLastBatchLines() {
+        return lastBatchLines;
+    }
+
+    @Override
+    public long getLastBatchBytes() {
+        return lastBatchBytes;
+    }
+
+    @Override
+    public void reset() {
+        phases.values().forEach(Histogram::reset);
+        errors.values().forEach(LongAdder::reset);
+        lastBatchLines = 0;
+        lastBatchBytes = 0;
+    }
+
+    /**
+     * The time one operation spent in each phase. Parsing threads add to it concurrently.
+     */
+    final class Operation {
+        private final Map<Phase, LongAdder> nanos = new EnumMap<>(Phase.class);
+        private long updateLines;
+        private long updateBytes;
+        private boolean update;
+
+        private Operation() {
+            for (Phase phase : Phase.values())
+                nanos.put(phase, new LongAdder());
+        }
+
+        /**
+         * Adds the time since {@code start} to the phase.
+         *
+         * @return The current time, to start timing the next phase from.
+         */
+        long lap(Phase phase, long start) {
+            final long now = System.nanoTime();
+            nanos.get(phase).add(now - start);
+            return now;
+        }
+
+        void add(Phase phase, long time) {
+            nanos.get(phase).add(time);
+        }
+
+        /**
+         * @return A timer for the phases of a loop over the lines of a file.
+         */
+        LineTimer lineTimer() {
+            return new LineTimer(this);
+        }
+
+        /**
+         * Counts the lines and bytes of an update file applied as part of the operation.
+         */
+        void updated(long lines, long bytes) {
+            update = true;
+            updateLines += lines;
+            updateBytes += bytes;
+        }
+
+        private void record() {
+            nanos.forEach((phase, time) -> {
+                if (time.sum() > 0)
+                    phases.get(phase).record(time.sum());
+            });
+            if (update) {
+                lastBatchLines = updateLines;
+                lastBatchBytes = updateBytes;
+            }
+        }
+    }
+
+    /**
+     * Times the phases of a loop over lines without reading the clock several times on every
+     * line, which costs about as much as the work on a short line. The loop is timed as a whole
+     * and only one line in {@link #SAMPLE_INTERVAL} is timed phase by phase, which tells how the
+     * whole time is split between the phases. Only used from a single thread.
+     */
+    static final class LineTimer {
+        private final Operation operation;
+        private final long start = System.nanoTime();
+        private final long[] sampled = new long[Phase.values().length];
+        private long lines;
+        private long mark = start;
+        private boolean sampling = true;
+
+        private LineTimer(Operation operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Ends a phase of the current line, starting the next one.
+         */
+        void lap(Phase phase) {
+            if (!sampling)
+                return;
+
+            final long now = System.nanoTime();
+            sampled[phase.ordinal()] += now - mark;
+            mark = now;
+        }
+
+        /**
+         * Ends the current line, the next phase is the first of the next line.
+         */
+        void nextLine() {
+            sampling = ++lines % SAMPLE_INTERVAL == 0;
+            if (sampling)
+                mark = System.nanoTime();
+        }
+
+        /**
+         * Adds the time of the loop to the operation, split between the phases as on the lines
+         * that were timed.
+         */
+        void finish() {
+            final long total = System.nanoTime() - start;
+            long sampledTotal = 0;
+            for (long time : sampled)
+                sampledTotal += time;
+            if (sampledTotal == 0)
+                return;
+
+            for (Phase phase : Phase.values()) {
+                final double share = (double) sampled[phase.ordinal()] / sampledTotal;
+                operation.add(phase, Math.round(total * share));
+            }
+        }
+    }
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            final long micros = nanos / 1000;
+            final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+            total.reset();
+            max.reset();
+        }
+
+        PhaseStatistics statistics() {
+            long[] histogram = new long[BUCKETS];
+            long samples = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = buckets.get(i);
+                samples += histogram[i];
+            }
+            return new PhaseStatistics(
+                samples,
+                total.sum() / 1e6,
+                max.get() / 1e6,
+                percentile(histogram, samples, 0.5),
+                percentile(histogram, samples, 0.9),
+                percentile(histogram, samples, 0.99),
+                histogram
+            );
+        }
+
+        /**
+         * @return The upper bound in milliseconds of the bucket the percentile falls in.
+         */
+        private static double percentile(long[] histogram, long samples, double percentile) {
+            if (samples == 0)
+                return 0;
+
+            final long rank = (long) Math.ceil(samples * percentile);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank)
+                    return (1L << i) / 1000.0;
+            }
+            return (1L << (histogram.length - 1)) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Map;
+
+/**
+ * Counters and latency histograms of the inventory, registered with the platform MBean server
+ * as {@value InventoryMetrics#OBJECT_NAME} by the window and the command line.
+ *
+ * Every phase is timed on the thread that runs it. With parallel parsing the read, parse and
+ * validate times are added up over every parsing thread, so together they can be longer than
+ * the operation took on the wall clock.
+ */
+public interface InventoryMetricsMXBean {
+    /**
+     * Finding the lines of inventory and update files.
+     */
+    PhaseStatistics getRead();
+
+    /**
+     * Turning lines into items.
+     */
+    PhaseStatistics getParse();
+
+    /**
+     * Checking the locations of items against the building setup.
+     */
+    PhaseStatistics getValidate();
+
+    /**
+     * Changing the stored items, including committing staged changes.
+     */
+    PhaseStatistics getApply();
+
+    /**
+     * Writing out the inventory in storage order, timed until the last line was taken.
+     */
+    PhaseStatistics getSave();
+
+    /**
+     * Writing out the inventory in item id order, timed until the last line was taken.
+     */
+    PhaseStatistics getExport();
+
+    int getItemCount();
+
+    /**
+     * @return The number of locations over every item.
+     */
+    long getLocationCount();
+
+    /**
+     * @return The number of errors reported so far per {@link InventoryError.Category}.
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * @return The number of lines of the last location, quantity or batch update.
+     */
+    long getLastBatchLines();
+
+    /**
+     * @return The size in bytes of the files of the last location, quantity or batch update.
+     */
+    long getLastBatchBytes();
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,641 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary, memory mapped snapshot of an inventory. Opening a snapshot only maps the file, checks
+ * that its header is consistent with the size of the file and reads the names, items are decoded
+ * from the mapped file when they are looked up. The checksums are checked by {@link #verify()},
+ * which reads the whole file. {@link #openLatest} verifies a generation before handing it out and
+ * falls back to the generation before it if it is corrupt. The file is mapped in windows of at
+ * most 1 GB, since a single mapping can not cover more than 2 GB.
+ *
+ * <pre>
+ * int   magic "SIMS"
+ * int   format version
+ * int   item count
+ * int   name count
+ * long  offset of the names
+ * long  offset of the record index
+ * long  CRC32 of the records
+ * long  CRC32 of the names, the record index and the preceding header fields
+ * records   per item: item id, quantity, location count and per location the building and aisle
+ *           name numbers and the PIL
+ * names     short length and UTF-8 bytes of every building and aisle name
+ * index     long offset of every record, sorted by item id
+ * </pre>
+ *
+ * Strings are written as a short byte length followed by UTF-8 bytes, a length of -1 marks a
+ * missing PIL and a quantity of {@link Item#NO_QUANTITY} marks a missing quantity.
+ *
+ * Every snapshot is written under a new generation number, {@code <base>.<generation>}, and never
+ * replaced in place. A mapped snapshot can therefore stay in use while a newer one is written.
+ * Older generations are kept until {@link #deleteGenerationsBefore} removes them, so there is one
+ * to fall back to.
+ */
+final class InventorySnapshot implements Closeable {
+    private static final int MAGIC = 0x53494D53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 48;
+    private static final int HEADER_CHECKSUM_OFFSET = 40;
+    private static final int NO_QUANTITY = Item.NO_QUANTITY;
+    private static final long WINDOW_SIZE = 1 << 30;
+
+    private final Path file;
+    private final long generation;
+    private final FileChannel channel;
+    private final long windowSize;
+    private final MappedByteBuffer[] windows;
+    private final int itemCount;
+    private final long namesOffset;
+    private final long indexOffset;
+    private final long dataChecksum;
+    private final String[] names;
+    private volatile long locationCount = -1;
+
+    private InventorySnapshot(Path file, long windowSize) throws IOException {
+        this.file = file;
+        this.generation = generationOf(file);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.windowSize = windowSize;
+        try {
+            final long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Snapshot " + file + " is truncated.");
+
+            this.windows = new MappedByteBuffer[(int) ((size + windowSize - 1) / windowSize)];
+            for (int i = 0; i < windows.length; i++) {
+                final long start = i * windowSize;
+                windows[i] = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    start,
+                    Math.min(windowSize, size - start)
+                );
+            }
+            if (intAt(0) != MAGIC)
+                throw new IOException(file + " is not an inventory snapshot.");
+            if (intAt(4) != VERSION)
+                throw new IOException("Snapshot " + file + " has an unknown version.");
+
+            this.itemCount = intAt(8);
+            final int nameCount = intAt(12);
+            this.namesOffset = longAt(16);
+            this.indexOffset = longAt(24);
+            this.dataChecksum = longAt(32);
+            if (itemCount < 0 ||
+                nameCount < 0 ||
+                namesOffset < HEADER_SIZE ||
+                indexOffset < namesOffset ||
+                indexOffset + (long) itemCount * 8 != size)
+                throw new IOException("Snapshot " + file + " is truncated.");
+
+            this.names = new String[nameCount];
+            Reader reader = new Reader(namesOffset);
+            try {
+                for (int i = 0; i < nameCount; i++)
+                    names[i] = readString(reader);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException("Snapshot " + file + " has a corrupt name table.", e);
+            }
+            if (reader.position != indexOffset)
+                throw new IOException("Snapshot " + file + " has a corrupt name table.");
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer window(long position) {
+        return windows[(int) (position / windowSize)];
+    }
+
+    private int offset(long position) {
+        return (int) (position % windowSize);
+    }
+
+    private short shortAt(long position) {
+        final int offset = offset(position);
+        final MappedByteBuffer window = window(position);
+        return offset + 2 <= window.limit() ?
+            window.getShort(offset) :
+            (short) straddlingAt(position, 2);
+    }
+
+    private int intAt(long position) {
+        final int offset = offset(position);
+        final MappedByteBuffer window = window(position);
+        return offset + 4 <= window.limit() ?
+            window.getInt(offset) :
+            (int) straddlingAt(position, 4);
+    }
+
+    private long longAt(long position) {
+        final int offset = offset(position);
+        final MappedByteBuffer window = window(position);
+        return offset + 8 <= window.limit() ?
+            window.getLong(offset) :
+            straddlingAt(position, 8);
+    }
+
+    /**
+     * Reads a big endian value that starts at the end of one window and ends in the next.
+     */
+    private long straddlingAt(long position, int length) {
+        long value = 0;
+        for (long i = position; i < position + length; i++)
+            value = value << 8 | (window(i).get(offset(i)) & 0xFF);
+        return value;
+    }
+
+    private void bytesAt(long position, byte[] bytes) {
+        int copied = 0;
+        while (copied < bytes.length) {
+            ByteBuffer window = window(position + copied).duplicate();
+            window.position(offset(position + copied));
+            if (!window.hasRemaining())
+                throw new IndexOutOfBoundsException("Read past the end of " + file);
+            final int length = Math.min(bytes.length - copied, window.remaining());
+            window.get(bytes, copied, length);
+            copied += length;
+        }
+    }
+
+    private void update(CRC32 checksum, long offset, long length) {
+        final long end = offset + length;
+        long position = offset;
+        while (position < end) {
+            ByteBuffer region = window(position).duplicate();
+            region.position(offset(position));
+            region.limit((int) Math.min(region.limit(), region.position() + end - position));
+            position += region.remaining();
+            checksum.update(region);
+        }
+    }
+
+    /**
+     * Opens the newest generation of the snapshot with the given base path that passes
+     * {@link #verify()}. A corrupt generation is left in place, see {@link #getGeneration()}.
+     *
+     * @return The snapshot, or empty if there is no valid snapshot.
+     */
+    public static Optional<InventorySnapshot> openLatest(Path base) throws IOException {
+        for (Path generation : generations(base)) {
+            final InventorySnapshot snapshot;
+            try {
+                snapshot = new InventorySnapshot(generation, WINDOW_SIZE);
+            } catch (IOException e) {
+                // Fall back to the previous generation.
+                continue;
+            }
+            if (snapshot.verify())
+                return Optional.of(snapshot);
+            snapshot.close();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return The newest generation number of the snapshot with the given base path, valid or
+     * not, or 0 if there is none.
+     */
+    static long latestGeneration(Path base) throws IOException {
+        List<Path> generations = generations(base);
+        return generations.isEmpty() ? 0 : generationOf(generations.get(0));
+    }
+
+    /**
+     * @return The generation number at the end of the name of a snapshot file, or -1 if there is
+     * none.
+     */
+    static long generationOf(Path file) {
+        final String name = file.getFileName().toString();
+        return generation(file, name.substring(0, name.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Removes the generations of the snapshot with the given base path before the given one where
+     * possible. A generation that is still mapped is removed by a later call.
+     */
+    static void deleteGenerationsBefore(Path base, long generation) throws IOException {
+        for (Path old : generations(base)) {
+            if (generationOf(old) >= generation)
+                continue;
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                // Still mapped, it is removed once it is no longer in use.
+            }
+        }
+    }
+
+    public static InventorySnapshot open(Path file) throws IOException {
+        return new InventorySnapshot(file, WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the snapshot mapped in windows of the given size rather than 1 GB.
+     */
+    static InventorySnapshot open(Path file, long windowSize) throws IOException {
+        return new InventorySnapshot(file, windowSize);
+    }
+
+    /**
+     * @return Every generation of the snapshot with the given base path, newest first.
+     */
+    private static List<Path> generations(Path base) throws IOException {
+        List<Path> generations = new ArrayList<>();
+        Path directory = base.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory))
+            return generations;
+
+        final String prefix = base.getFileName().toString() + '.';
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                if (generation(file, prefix) >= 0)
+                    generations.add(file);
+            }
+        }
+        generations.sort(
+            Comparator.comparingLong((Path file) -> generation(file, prefix)).reversed()
+        );
+        return generations;
+    }
+
+    private static long generation(Path file, String prefix) {
+        final String suffix = file.getFileName().toString().substring(prefix.length());
+        if (suffix.isEmpty() || !suffix.chars().allMatch(Character::isDigit))
+            return -1;
+        try {
+            return Long.parseLong(suffix);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the items as the next generation of the snapshot with the given base path, leaving
+     * the generations before it in place.
+     *
+     * @return The file the snapshot was written to.
+     */
+    public static Path write(Path base, List<Item> items) throws IOException {
+        List<Item> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparing(Item::getItemId));
+        return write(base, sorted.size(), sorted.stream());
+    }
+
+    /**
+     * Writes the items as the next generation of the snapshot with the given base path, leaving
+     * the generations before it in place. The items are written as they are walked, so they have
+     * to come in item id order.
+     *
+     * @param count The number of items.
+     * @param sortedItems The items in item id order.
+     * @return The file the snapshot was written to.
+     * @throws IllegalArgumentException If the items are out of order or not as many as the count.
+     */
+    public static Path write(Path base, int count, Stream<Item> sortedItems) throws IOException {
+        final long generation = latestGeneration(base) + 1;
+        Path file = base.resolveSibling(base.getFileName().toString() + '.' + generation);
+        Path temporary = base.resolveSibling(base.getFileName().toString() + ".tmp");
+
+        Map<String, Integer> nameCodes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        long[] offsets = new long[count];
+        final long namesOffset;
+        final long indexOffset;
+        final long dataChecksum;
+        CRC32 headerChecksum = new CRC32();
+        try (FileChannel output = FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            output.position(HEADER_SIZE);
+            OutputStream stream = new BufferedOutputStream(
+                Channels.newOutputStream(output),
+                1 << 16
+            );
+
+            CheckedOutputStream records = new CheckedOutputStream(stream, new CRC32());
+            // The count of a DataOutputStream stops at 2 GB, the records can be larger.
+            CountingOutputStream recordBytes = new CountingOutputStream(records);
+            DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+            int written = 0;
+            String previous = null;
+            for (Iterator<Item> items = sortedItems.iterator(); items.hasNext(); written++) {
+                Item item = items.next();
+                if (written == count)
+                    throw new IllegalArgumentException("More items than the count of " + count);
+                if (previous != null && previous.compareTo(item.getItemId()) >= 0)
+                    throw new IllegalArgumentException("Items are not sorted at " + item);
+                previous = item.getItemId();
+                offsets[written] = HEADER_SIZE + recordBytes.count;
+                writeItem(recordOutput, item, nameCodes, names);
+            }
+            if (written != count)
+                throw new IllegalArgumentException(written + " items instead of " + count);
+            recordOutput.flush();
+            dataChecksum = records.getChecksum().getValue();
+            namesOffset = HEADER_SIZE + recordBytes.count;
+
+            // The names only are known once every record is written, so they follow the records.
+            CountingOutputStream tableBytes = new CountingOutputStream(
+                new CheckedOutputStream(stream, headerChecksum)
+            );
+            DataOutputStream tableOutput = new DataOutputStream(tableBytes);
+            for (String name : names)
+                writeString(tableOutput, name);
+            indexOffset = namesOffset + tableBytes.count;
+            for (long offset : offsets)
+                tableOutput.writeLong(offset);
+            tableOutput.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(count);
+            header.putInt(names.size());
+            header.putLong(namesOffset);
+            header.putLong(indexOffset);
+            header.putLong(dataChecksum);
+            headerChecksum.update(header.array(), 0, HEADER_CHECKSUM_OFFSET);
+            header.putLong(headerChecksum.getValue());
+            header.flip();
+            output.position(0);
+            while (header.hasRemaining())
+                output.write(header);
+            output.force(true);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    private static void writeItem(
+        DataOutputStream output,
+        Item item,
+        Map<String, Integer> nameCodes,
+        List<String> names
+    ) throws IOException {
+        writeString(output, item.getItemId());
+        output.writeInt(item.getQuantity().orElse(NO_QUANTITY));
+        List<PIL> locations = new ArrayList<>();
+        item.getLocations().forEach(locations::add);
+        output.writeInt(locations.size());
+        for (PIL location : locations) {
+            output.writeInt(nameCode(location.getBuilding(), nameCodes, names));
+            output.writeInt(nameCode(location.getAisle(), nameCodes, names));
+            Optional<String> pil = location.getPIL();
+            if (pil.isPresent())
+                writeString(output, pil.get());
+            else
+                output.writeShort(-1);
+        }
+    }
+
+    private static int nameCode(String name, Map<String, Integer> nameCodes, List<String> names) {
+        return nameCodes.computeIfAbsent(name, added -> {
+            names.add(added);
+            return names.size() - 1;
+        });
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE)
+            throw new IOException("Value is too long for a snapshot: " + value.substring(0, 32));
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads the mapped file from a position onward, across the windows it is mapped in.
+     */
+    private final class Reader {
+        private long position;
+
+        Reader(long position) {
+            this.position = position;
+        }
+
+        short getShort() {
+            final short value = shortAt(position);
+            position += 2;
+            return value;
+        }
+
+        int getInt() {
+            final int value = intAt(position);
+            position += 4;
+            return value;
+        }
+
+        void get(byte[] bytes) {
+            bytesAt(position, bytes);
+            position += bytes.length;
+        }
+
+        void skip(long length) {
+            position += length;
+        }
+    }
+
+    private static String readString(Reader reader) {
+        final int length = reader.getShort();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long recordOffset(int index) {
+        return longAt(indexOffset + (long) index * 8);
+    }
+
+    private String itemId(int index) {
+        return readString(new Reader(recordOffset(index)));
+    }
+
+    /**
+     * Decodes the item at the given position of the index.
+     */
+    public Item item(int index) {
+        Reader reader = new Reader(recordOffset(index));
+        final String itemId = readString(reader);
+        final int quantity = reader.getInt();
+        final int locationCount = reader.getInt();
+        List<PIL> locations = new ArrayList<>(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            final String building = names[reader.getInt()];
+            final String aisle = names[reader.getInt()];
+            locations.add(new PIL(building, aisle, readString(reader)));
+        }
+        return new Item(
+            itemId,
+            locations,
+            quantity == NO_QUANTITY ? Optional.empty() : Optional.of(quantity)
+        );
+    }
+
+    /**
+     * @return The position of the item id in the index, or a negative number if it is missing.
+     */
+    public int indexOf(String itemId) {
+        int low = 0;
+        int high = itemCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = itemId(middle).compareTo(itemId);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    public Optional<Item> find(String itemId) {
+        final int index = indexOf(itemId);
+        return index < 0 ? Optional.empty() : Optional.of(item(index));
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * Counts the locations of every item on first use by skipping over the records, without
+     * decoding any item.
+     *
+     * @return The number of locations over every item.
+     */
+    public long locationCount() {
+        if (locationCount < 0) {
+            long count = 0;
+            Reader reader = new Reader(HEADER_SIZE);
+            for (int i = 0; i < itemCount; i++) {
+                skipString(reader);
+                reader.skip(4);
+                final int locations = reader.getInt();
+                for (int j = 0; j < locations; j++) {
+                    reader.skip(8);
+                    skipString(reader);
+                }
+                count += locations;
+            }
+            locationCount = count;
+        }
+        return locationCount;
+    }
+
+    private static void skipString(Reader reader) {
+        final int length = reader.getShort();
+        if (length > 0)
+            reader.skip(length);
+    }
+
+    /**
+     * @return Every item in item id order.
+     */
+    public Stream<Item> items() {
+        return IntStream.range(0, itemCount).mapToObj(this::item);
+    }
+
+    /**
+     * @return Every item id in order.
+     */
+    public Stream<String> itemIds() {
+        return IntStream.range(0, itemCount).mapToObj(this::itemId);
+    }
+
+    /**
+     * Checks the header, names, index and records against their checksums. Opening a snapshot
+     * does not check them, so this reads the whole file.
+     */
+    public boolean verify() {
+        CRC32 header = new CRC32();
+        update(header, namesOffset, indexOffset + (long) itemCount * 8 - namesOffset);
+        update(header, 0, HEADER_CHECKSUM_OFFSET);
+        if (header.getValue() != longAt(HEADER_CHECKSUM_OFFSET))
+            return false;
+
+        CRC32 records = new CRC32();
+        update(records, HEADER_SIZE, namesOffset - HEADER_SIZE);
+        return records.getValue() == dataChecksum;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The generation number of the snapshot, which tells the journals written after it
+     * apart from those written before it, see {@link InventoryJournal}.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,138 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Storage engine behind {@link Inventory}, holding items keyed by their item id.
+ */
+interface InventoryStore {
+    Optional<Item> get(String itemId);
+
+    boolean contains(String itemId);
+
+    /**
+     * Inserts the item, replacing any item with the same id.
+     */
+    void put(Item item);
+
+    void remove(String itemId);
+
+    /**
+     * Gives the stored item the quantity of the update and keeps its locations. Stores override
+     * this to change the item in place with a single lookup.
+     *
+     * @return The change, or empty if there is no item with the id of the update, in which case
+     * nothing changes.
+     */
+    default Optional<ItemUpdate> updateQuantity(Item update) {
+        Optional<Item> previous = get(update.getItemId());
+        previous.ifPresent(item -> put(item.withQuantity(update.getQuantity())));
+        return previous.map(item -> ItemUpdate.ofQuantity(item, update.getQuantity()));
+    }
+
+    /**
+     * Gives the stored item the locations of the update and keeps its quantity. Stores override
+     * this to change the item in place with a single lookup.
+     *
+     * @return The change, or empty if there is no item with the id of the update, in which case
+     * nothing changes.
+     */
+    default Optional<ItemUpdate> updateLocations(Item update) {
+        Optional<Item> previous = get(update.getItemId());
+        previous.ifPresent(item -> put(item.withLocationsOf(update)));
+        return previous.map(item -> ItemUpdate.ofLocations(item, update));
+    }
+
+    void clear();
+
+    int size();
+
+    /**
+     * @return Every item in no particular order.
+     */
+    Stream<Item> items();
+
+    /**
+     * @return Every item id in no particular order.
+     */
+    Stream<String> itemIds();
+
+    /**
+     * @return Every item in item id order, walked from an index kept in order as items come and
+     * go rather than sorted on every call.
+     */
+    Stream<Item> sortedItems();
+
+    /**
+     * Copies the store for reading on another thread. The copy is not affected by later changes
+     * to the store, and changing the copy does not affect the store. Stores built on persistent
+     * maps override this to take O(1), the others are copied item by item.
+     */
+    default InventoryStore snapshot() {
+        return PersistentInventoryStore.copyOf(sortedItems());
+    }
+
+    /**
+     * Merges two streams of items, each in item id order and without ids in common, into a single
+     * stream in item id order.
+     */
+    static Stream<Item> mergeSorted(Stream<Item> first, Stream<Item> second) {
+        final Iterator<Item> left = first.iterator();
+        final Iterator<Item> right = second.iterator();
+        Iterator<Item> merged = new Iterator<Item>() {
+            private Item nextLeft = left.hasNext() ? left.next() : null;
+            private Item nextRight = right.hasNext() ? right.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextLeft != null || nextRight != null;
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final Item item;
+                if (nextRight == null ||
+                    (nextLeft != null &&
+                        nextLeft.getItemId().compareTo(nextRight.getItemId()) < 0)) {
+                    item = nextLeft;
+                    nextLeft = left.hasNext() ? left.next() : null;
+                } else {
+                    item = nextRight;
+                    nextRight = right.hasNext() ? right.next() : null;
+                }
+                return item;
+            }
+        };
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                merged,
+                Spliterator.ORDERED | Spliterator.NONNULL
+            ),
+            false
+        ).onClose(() -> {
+            first.close();
+            second.close();
+        });
+    }
+
+    static InventoryStore create(StorageEngine engine) {
+        switch (engine) {
+            case COLUMNAR:
+                return new ColumnarInventoryStore();
+            case PERSISTENT:
+                return new PersistentInventoryStore();
+            case HASH_MAP:
+            default:
+                return new HashInventoryStore();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+import com.zingkg.shippinginventorymanager.InventoryMetrics.Phase;
+
+/**
+ * The inventory as it was at the end of an operation, see {@link Inventory#getVersion()}. A
+ * version never changes, so it can be read from any number of threads without locking while the
+ * inventory goes on to apply the next updates. An export of a version does not hold up updates
+ * and always writes a consistent inventory.
+ *
+ * Location queries are not part of a version, they are answered by the inventory itself.
+ */
+public final class InventoryVersion {
+    private final InventoryStore items;
+    private final InventoryMetrics metrics;
+
+    InventoryVersion(InventoryStore items, InventoryMetrics metrics) {
+        this.items = items;
+        this.metrics = metrics;
+    }
+
+    public Optional<Item> getItem(String itemId) {
+        return items.get(itemId);
+    }
+
+    /**
+     * @return The number of items in this version.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    public Stream<String> exportInventory() {
+        Stream<String> headerStream = Stream.of(Inventory.INVENTORY_HEADER);
+        Stream<String> itemStream = items.sortedItems().map(Item::toCSVRow);
+        return metrics.timed(Phase.EXPORT, Stream.concat(headerStream, itemStream));
+    }
+
+    /**
+     * Writes the inventory file in item id order straight into the writer.
+     */
+    public void exportInventory(Writer writer) throws IOException {
+        exportInventory(writer, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Writes the inventory file in item id order, reporting progress every few thousand rows.
+     *
+     * @throws CancellationException If the monitor was cancelled. The writer is left with part of
+     * the inventory.
+     */
+    public void exportInventory(Writer writer, ProgressMonitor monitor) throws IOException {
+        final long start = System.nanoTime();
+        Inventory.write(items.sortedItems(), items.size(), writer, monitor);
+        metrics.record(Phase.EXPORT, System.nanoTime() - start);
+    }
+}
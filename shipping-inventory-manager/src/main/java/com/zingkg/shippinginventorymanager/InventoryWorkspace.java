@@ -0,0 +1,116 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import javax.management.JMException;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * The inventory kept in the internal directory together with the journal of its changes and the
+ * ledger of the update files applied to it. Shared by the window and the command line so both
+ * restore the inventory the same way.
+ */
+final class InventoryWorkspace implements Closeable {
+    static final String SETUP_FILE_PATH = "internal/inventory-setup.xml";
+    static final String COMPILED_SETUP_FILE_PATH = "internal/inventory-setup.bin";
+    static final String INVENTORY_FILE_PATH = "internal/inventory.csv";
+    static final String SNAPSHOT_FILE_PATH = "internal/inventory.bin";
+    static final String ERROR_FILE_PATH = "internal/error.txt";
+    static final String LEDGER_FILE_PATH = "internal/applied-updates.bin";
+
+    private final Inventory inventory;
+    private final InventoryJournal journal;
+    private final UpdateLedger ledger;
+
+    private InventoryWorkspace(Inventory inventory, InventoryJournal journal, UpdateLedger ledger) {
+        this.inventory = inventory;
+        this.journal = journal;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Restores the inventory from the latest valid snapshot, or from the inventory file if there
+     * is no snapshot yet, and replays the journal on top of it. If the newest snapshot is corrupt
+     * the generation before it is restored and the journals since are replayed as well. The
+     * metrics of the inventory are registered for JMX monitoring. The inventory uses the
+     * {@link StorageEngine#PERSISTENT} engine, so {@link Inventory#getVersion() versions} of it
+     * can be exported while it is being updated.
+     *
+     * @param errors Receives the journal entries that could not be replayed.
+     */
+    public static InventoryWorkspace open(ErrorSink errors) throws
+        IOException,
+        XMLStreamException {
+        return open(Paths.get(""), errors);
+    }
+
+    /**
+     * Opens the workspace with its internal directory in the given directory rather than the
+     * working directory.
+     */
+    static InventoryWorkspace open(Path root, ErrorSink errors) throws
+        IOException,
+        XMLStreamException {
+        Inventory inventory = new Inventory(
+            BuildingSetup.load(
+                root.resolve(SETUP_FILE_PATH),
+                root.resolve(COMPILED_SETUP_FILE_PATH)
+            ).stream(),
+            StorageEngine.PERSISTENT
+        );
+        Path snapshotFile = root.resolve(SNAPSHOT_FILE_PATH);
+        Optional<InventorySnapshot> snapshot = InventorySnapshot.openLatest(snapshotFile);
+        Path inventoryFile = root.resolve(INVENTORY_FILE_PATH);
+        if (snapshot.isPresent())
+            inventory.openSnapshot(snapshot.get());
+        else if (Files.exists(inventoryFile))
+            inventory.loadInventory(inventoryFile);
+        UpdateLedger ledger = UpdateLedger.open(root.resolve(LEDGER_FILE_PATH));
+        final InventoryJournal journal;
+        try {
+            journal = InventoryJournal.open(
+                inventory,
+                snapshotFile,
+                snapshot.map(InventorySnapshot::getGeneration).orElse(0L),
+                InventoryJournal.DEFAULT_COMPACTION_THRESHOLD,
+                Optional.of(ledger),
+                errors
+            );
+        } catch (IOException | RuntimeException e) {
+            ledger.close();
+            throw e;
+        }
+        try {
+            inventory.getMetrics().register();
+        } catch (JMException e) {
+            // The inventory works the same without being monitored.
+        }
+        return new InventoryWorkspace(inventory, journal, ledger);
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public InventoryJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            inventory.getMetrics().unregister();
+        } catch (JMException e) {
+            // Nothing to clean up if it was never registered.
+        }
+        try {
+            journal.close();
+        } finally {
+            ledger.close();
+        }
+    }
+}
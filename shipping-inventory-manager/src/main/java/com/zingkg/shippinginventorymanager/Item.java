@@ -1,47 +1,83 @@
 package com.zingkg.shippinginventorymanager;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.StringJoiner;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Item {
+    /**
+     * Stands in for a quantity of "-" where quantities are kept as plain ints, so it is not a
+     * quantity an item can have.
+     */
+    static final int NO_QUANTITY = Integer.MIN_VALUE;
+
     private String itemId;
     private List<PIL> locations;
     private Optional<Integer> quantity;
 
     public Item(String itemId, Stream<PIL> locations, Optional<Integer> quantity) {
-        this.itemId = itemId;
-        this.locations = locations.collect(
-            Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)
+        this(
+            itemId,
+            locations.collect(Collectors.toList()),
+            quantity
         );
+    }
+
+    /**
+     * Takes ownership of the given list of locations without copying it.
+     */
+    Item(String itemId, List<PIL> locations, Optional<Integer> quantity) {
+        this(itemId, quantity, Collections.unmodifiableList(locations));
+    }
+
+    /**
+     * Shares the given list, which has to be unmodifiable already.
+     */
+    private Item(String itemId, Optional<Integer> quantity, List<PIL> locations) {
+        this.itemId = itemId;
+        this.locations = locations;
         this.quantity = quantity;
     }
 
     public String toCSVRow() {
-        StringJoiner locationString = new StringJoiner(" Y ");
+        StringBuilder row = new StringBuilder(itemId.length() + 16 * (locations.size() + 1));
+        try {
+            appendCSVRow(row);
+        } catch (IOException e) {
+            // A StringBuilder never throws.
+            throw new UncheckedIOException(e);
+        }
+        return row.toString();
+    }
+
+    /**
+     * Appends the row written by {@link #toCSVRow()}, without the line break, piece by piece so
+     * no strings are built along the way.
+     */
+    void appendCSVRow(Appendable out) throws IOException {
+        out.append(itemId).append(',');
         if (locations.isEmpty()) {
-            locationString.add("-");
+            out.append('-');
         } else {
-            locations.stream().forEach(location -> {
-                String pil;
-                if (location.getPIL().isPresent())
-                    pil = location.getPIL().get();
-                else
-                    pil = "-";
-    
-                locationString.add(location.getBuilding() + '.' + location.getAisle() + '.' + pil);
-            });
+            for (int i = 0; i < locations.size(); i++) {
+                if (i > 0)
+                    out.append(" Y ");
+                PIL location = locations.get(i);
+                out.append(location.getBuilding()).append('.').append(location.getAisle());
+                final String pil = location.getPILOrNull();
+                out.append('.').append(pil == null ? "-" : pil);
+            }
         }
-        final String quantityString;
+        out.append(',');
         if (quantity.isPresent())
-            quantityString = quantity.get().toString();
+            CsvWriter.appendInt(out, quantity.get());
         else
-            quantityString = "-";
-
-        return itemId + ',' + locationString.toString() + ',' + quantityString;
+            out.append('-');
     }
 
     public String getItemId() {
@@ -52,6 +88,13 @@ public class Item {
         return locations.stream();
     }
 
+    /**
+     * @return The unmodifiable list of locations, for callers that walk it without a stream.
+     */
+    List<PIL> getLocationList() {
+        return locations;
+    }
+
     public Optional<Integer> getQuantity() {
         return quantity;
     }
@@ -61,7 +104,23 @@ public class Item {
     }
 
     public Item updateQuantity(Optional<Integer> updatedQuantity) {
-        return new Item(itemId, locations.stream(), updatedQuantity);
+        return withQuantity(updatedQuantity);
+    }
+
+    /**
+     * @return The item with the locations of the other item, sharing their list rather than
+     * copying it.
+     */
+    Item withLocationsOf(Item other) {
+        return new Item(itemId, quantity, other.locations);
+    }
+
+    /**
+     * @return The item with another quantity, sharing the list of locations rather than copying
+     * it.
+     */
+    Item withQuantity(Optional<Integer> updatedQuantity) {
+        return new Item(itemId, updatedQuantity, locations);
     }
 }
 
@@ -71,9 +130,16 @@ public class Item {
 class PIL {
     private String building;
     private String aisle;
-    private Optional<String> pil;
+    private String pil;
 
     public PIL(String building, String aisle, Optional<String> pil) {
+        this(building, aisle, pil.orElse(null));
+    }
+
+    /**
+     * @param pil The PIL within the aisle, or null if there is none.
+     */
+    PIL(String building, String aisle, String pil) {
         this.building = building;
         this.aisle = aisle;
         this.pil = pil;
@@ -88,6 +154,32 @@ class PIL {
     }
 
     public Optional<String> getPIL() {
+        return Optional.ofNullable(pil);
+    }
+
+    /**
+     * @return The PIL within the aisle, or null if there is none.
+     */
+    String getPILOrNull() {
         return pil;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PIL))
+            return false;
+
+        PIL other = (PIL) o;
+        // Building and aisle names are usually pooled, so these are mostly reference checks.
+        return building.equals(other.building) &&
+            aisle.equals(other.aisle) &&
+            Objects.equals(pil, other.pil);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * building.hashCode() + aisle.hashCode()) + Objects.hashCode(pil);
+    }
 }
@@ -0,0 +1,168 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A change made in place to either the quantity or the locations of a stored item, as handed to
+ * {@link InventoryListener#itemUpdated(ItemUpdate)}.
+ *
+ * The quantities and the location counts before and after the change are at hand. The locations
+ * and the items themselves are only built when a listener asks for them, which it can only do
+ * while it is being notified.
+ */
+final class ItemUpdate {
+    private final String itemId;
+    private final boolean locationUpdate;
+    private final Optional<Integer> previousQuantity;
+    private final Optional<Integer> quantity;
+    private final int previousLocationCount;
+    private final int locationCount;
+    private final Supplier<List<PIL>> previousLocations;
+    private final Supplier<List<PIL>> locations;
+
+    private ItemUpdate(
+        String itemId,
+        boolean locationUpdate,
+        Optional<Integer> previousQuantity,
+        Optional<Integer> quantity,
+        int previousLocationCount,
+        int locationCount,
+        Supplier<List<PIL>> previousLocations,
+        Supplier<List<PIL>> locations
+    ) {
+        this.itemId = itemId;
+        this.locationUpdate = locationUpdate;
+        this.previousQuantity = previousQuantity;
+        this.quantity = quantity;
+        this.previousLocationCount = previousLocationCount;
+        this.locationCount = locationCount;
+        this.previousLocations = previousLocations;
+        this.locations = locations;
+    }
+
+    /**
+     * @param previous The item before its quantity was changed.
+     */
+    static ItemUpdate ofQuantity(Item previous, Optional<Integer> quantity) {
+        final List<PIL> locations = previous.getLocationList();
+        return ofQuantity(
+            previous.getItemId(),
+            previous.getQuantity(),
+            quantity,
+            locations.size(),
+            () -> locations
+        );
+    }
+
+    /**
+     * @param locations Reads the locations of the item, which the change left as they were.
+     */
+    static ItemUpdate ofQuantity(
+        String itemId,
+        Optional<Integer> previousQuantity,
+        Optional<Integer> quantity,
+        int locationCount,
+        Supplier<List<PIL>> locations
+    ) {
+        return new ItemUpdate(
+            itemId,
+            false,
+            previousQuantity,
+            quantity,
+            locationCount,
+            locationCount,
+            locations,
+            locations
+        );
+    }
+
+    /**
+     * @param previous The item before its locations were changed.
+     * @param update Holds the new locations of the item.
+     */
+    static ItemUpdate ofLocations(Item previous, Item update) {
+        final List<PIL> previousLocations = previous.getLocationList();
+        return ofLocations(
+            previous.getItemId(),
+            previous.getQuantity(),
+            previousLocations.size(),
+            () -> previousLocations,
+            update
+        );
+    }
+
+    /**
+     * @param previousLocations Reads the locations the item had before the change.
+     * @param update Holds the new locations of the item.
+     */
+    static ItemUpdate ofLocations(
+        String itemId,
+        Optional<Integer> quantity,
+        int previousLocationCount,
+        Supplier<List<PIL>> previousLocations,
+        Item update
+    ) {
+        final List<PIL> locations = update.getLocationList();
+        return new ItemUpdate(
+            itemId,
+            true,
+            quantity,
+            quantity,
+            previousLocationCount,
+            locations.size(),
+            previousLocations,
+            () -> locations
+        );
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    /**
+     * @return True if the locations of the item were changed, false if its quantity was.
+     */
+    public boolean isLocationUpdate() {
+        return locationUpdate;
+    }
+
+    public Optional<Integer> getPreviousQuantity() {
+        return previousQuantity;
+    }
+
+    public Optional<Integer> getQuantity() {
+        return quantity;
+    }
+
+    public int getPreviousLocationCount() {
+        return previousLocationCount;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public List<PIL> getPreviousLocations() {
+        return previousLocations.get();
+    }
+
+    public List<PIL> getLocations() {
+        return locations.get();
+    }
+
+    /**
+     * @return The item as it was before the change, built on every call.
+     */
+    public Item getPrevious() {
+        return new Item(itemId, getPreviousLocations(), previousQuantity);
+    }
+
+    /**
+     * @return The item as it is after the change, built on every call.
+     */
+    public Item getItem() {
+        return new Item(itemId, getLocations(), quantity);
+    }
+}
@@ -0,0 +1,159 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Secondary index from building, aisle and PIL to the ids of the items stored there, kept in step
+ * with the inventory by listening to its changes. A PIL of "-" is indexed under "-".
+ *
+ * The index is built from the inventory on first use rather than up front, so restoring the
+ * inventory from a memory mapped snapshot does not have to decode every item. Changes made before
+ * it is built are ignored since the build picks them up.
+ */
+final class LocationIndex implements InventoryListener {
+    private static final String NO_PIL = "-";
+
+    private final Supplier<Stream<Item>> items;
+    private final Map<String, Map<String, Map<String, Set<String>>>> buildings = new HashMap<>();
+    private boolean built;
+
+    /**
+     * @param items Supplies every item of the inventory to build the index from.
+     */
+    public LocationIndex(Supplier<Stream<Item>> items) {
+        this.items = items;
+    }
+
+    /**
+     * Drops the index after the inventory was replaced without notifying listeners, it is built
+     * again on the next query.
+     */
+    public void invalidate() {
+        buildings.clear();
+        built = false;
+    }
+
+    private void build() {
+        if (built)
+            return;
+
+        items.get().forEach(this::add);
+        built = true;
+    }
+
+    @Override
+    public void itemPut(Optional<Item> previous, Item item) {
+        if (!built)
+            return;
+
+        previous.ifPresent(this::remove);
+        add(item);
+    }
+
+    /**
+     * Only a change of the locations touches the index.
+     */
+    @Override
+    public void itemUpdated(ItemUpdate update) {
+        if (!built || !update.isLocationUpdate())
+            return;
+
+        remove(update.getItemId(), update.getPreviousLocations());
+        add(update.getItemId(), update.getLocations());
+    }
+
+    @Override
+    public void itemRemoved(Item item) {
+        if (built)
+            remove(item);
+    }
+
+    @Override
+    public void cleared() {
+        buildings.clear();
+        built = true;
+    }
+
+    private void add(Item item) {
+        add(item.getItemId(), item.getLocationList());
+    }
+
+    private void add(String itemId, List<PIL> locations) {
+        locations.forEach(location ->
+            buildings.computeIfAbsent(location.getBuilding(), building -> new HashMap<>())
+                .computeIfAbsent(location.getAisle(), aisle -> new HashMap<>())
+                .computeIfAbsent(location.getPIL().orElse(NO_PIL), pil -> new HashSet<>())
+                .add(itemId)
+        );
+    }
+
+    private void remove(Item item) {
+        remove(item.getItemId(), item.getLocationList());
+    }
+
+    private void remove(String itemId, List<PIL> locations) {
+        locations.forEach(location -> {
+            Map<String, Map<String, Set<String>>> aisles = buildings.get(location.getBuilding());
+            if (aisles == null)
+                return;
+            Map<String, Set<String>> pils = aisles.get(location.getAisle());
+            if (pils == null)
+                return;
+            final String pil = location.getPIL().orElse(NO_PIL);
+            Set<String> itemIds = pils.get(pil);
+            if (itemIds == null)
+                return;
+
+            // Empty levels are dropped so the index only grows with the occupied locations.
+            itemIds.remove(itemId);
+            if (itemIds.isEmpty()) {
+                pils.remove(pil);
+                if (pils.isEmpty()) {
+                    aisles.remove(location.getAisle());
+                    if (aisles.isEmpty())
+                        buildings.remove(location.getBuilding());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The ids of the items anywhere in the building. May contain duplicates when an item
+     * is in several locations of the building.
+     */
+    public Stream<String> itemIds(String building) {
+        build();
+        return buildings.getOrDefault(building, Collections.emptyMap()).values().stream()
+            .flatMap(pils -> pils.values().stream())
+            .flatMap(Set::stream);
+    }
+
+    /**
+     * @return The ids of the items anywhere in the aisle. May contain duplicates when an item is
+     * in several locations of the aisle.
+     */
+    public Stream<String> itemIds(String building, String aisle) {
+        build();
+        return buildings.getOrDefault(building, Collections.emptyMap())
+            .getOrDefault(aisle, Collections.emptyMap()).values().stream()
+            .flatMap(Set::stream);
+    }
+
+    /**
+     * @return The ids of the items at the PIL.
+     */
+    public Stream<String> itemIds(String building, String aisle, String pil) {
+        build();
+        return buildings.getOrDefault(building, Collections.emptyMap())
+            .getOrDefault(aisle, Collections.emptyMap())
+            .getOrDefault(pil, Collections.emptySet()).stream();
+    }
+}
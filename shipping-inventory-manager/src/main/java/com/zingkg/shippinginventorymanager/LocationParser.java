@@ -0,0 +1,122 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Single pass tokenizer for location strings of the form
+ * {@code building.aisle.pil Y building.aisle.pil}. Locations are separated by a lower case "y" or
+ * by a " Y " and every location needs at least a building, an aisle and a PIL separated by dots.
+ * A PIL of "-" means the location has no PIL and a location string of "-" means there are no
+ * locations at all.
+ */
+final class LocationParser {
+    private LocationParser() {
+    }
+
+    /**
+     * @throws InventoryParseException If a location does not have a building, aisle and PIL.
+     */
+    public static List<PIL> parse(String locations) {
+        return parse(locations, SHARED_POOL);
+    }
+
+    /**
+     * Parses the locations, taking building and aisle names from the given pool.
+     *
+     * @throws InventoryParseException If a location does not have a building, aisle and PIL.
+     */
+    public static List<PIL> parse(String locations, LocationPool pool) {
+        final int length = locations.length();
+        if (length == 1 && locations.charAt(0) == '-')
+            return Collections.emptyList();
+
+        List<PIL> pils = new ArrayList<>(2);
+        int start = 0;
+        // End of the last " Y " separator, its trailing space can not start another separator.
+        int separatorEnd = 0;
+        boolean separated = false;
+        for (int i = 0; i < length; i++) {
+            final char c = locations.charAt(i);
+            final boolean isSeparator = c == 'y' ||
+                (c == 'Y' && i > separatorEnd && i + 1 < length &&
+                    locations.charAt(i - 1) == ' ' && locations.charAt(i + 1) == ' ');
+            if (isSeparator) {
+                if (c == 'Y')
+                    separatorEnd = i + 2;
+                pils.add(parseLocation(locations, start, i, pool));
+                start = i + 1;
+                separated = true;
+            }
+        }
+        if (start < length || !separated)
+            pils.add(parseLocation(locations, start, length, pool));
+        else
+            removeTrailingEmpty(pils);
+        for (PIL pil : pils) {
+            if (pil == EMPTY)
+                throw new InventoryParseException("Exception occurred when parsing locations.");
+        }
+        return pils;
+    }
+
+    private static final PIL EMPTY = new PIL("", "", (String) null);
+    private static final LocationPool SHARED_POOL = new LocationPool(Stream.empty());
+
+    /**
+     * Locations that are empty before the final separator are dropped rather than rejected, the
+     * same as the trailing empty strings of {@code String.split}.
+     */
+    private static void removeTrailingEmpty(List<PIL> pils) {
+        while (!pils.isEmpty() && pils.get(pils.size() - 1) == EMPTY)
+            pils.remove(pils.size() - 1);
+    }
+
+    private static PIL parseLocation(String locations, int start, int end, LocationPool pool) {
+        if (start == end)
+            return EMPTY;
+
+        while (start < end && locations.charAt(start) <= ' ')
+            start++;
+        while (end > start && locations.charAt(end - 1) <= ' ')
+            end--;
+
+        final int aisleDot = indexOf(locations, '.', start, end);
+        final int pilDot = indexOf(locations, '.', aisleDot + 1, end);
+        if (pilDot >= end)
+            throw new InventoryParseException("Exception occurred when parsing locations.");
+
+        final int pilEnd = indexOf(locations, '.', pilDot + 1, end);
+        if (pilEnd == pilDot + 1 && onlyDots(locations, pilEnd, end))
+            throw new InventoryParseException("Exception occurred when parsing locations.");
+
+        final String pil;
+        if (pilEnd == pilDot + 2 && locations.charAt(pilDot + 1) == '-')
+            pil = null;
+        else
+            pil = locations.substring(pilDot + 1, pilEnd);
+        return new PIL(
+            pool.intern(locations, start, aisleDot),
+            pool.intern(locations, aisleDot + 1, pilDot),
+            pil
+        );
+    }
+
+    private static int indexOf(String s, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (s.charAt(i) == c)
+                return i;
+        }
+        return end;
+    }
+
+    private static boolean onlyDots(String s, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (s.charAt(i) != '.')
+                return false;
+        }
+        return true;
+    }
+}
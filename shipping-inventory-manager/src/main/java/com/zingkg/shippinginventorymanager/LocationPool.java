@@ -0,0 +1,72 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Canonical instances of the building and aisle names used by locations. The pool is seeded with
+ * every building, aisle number and special area nickname from the building setup, so in practice
+ * all locations share a handful of strings instead of holding their own copies. Lookups of seeded
+ * names compare characters in place and do not allocate. Names outside the setup are interned on
+ * demand up to a fixed limit, after which they are simply not shared.
+ *
+ * The pool is safe to use from several threads at once.
+ */
+final class LocationPool {
+    private static final int MAX_OVERFLOW = 1 << 16;
+
+    private final String[] table;
+    private final int mask;
+    private final ConcurrentHashMap<String, String> overflow = new ConcurrentHashMap<>();
+
+    public LocationPool(Stream<Building> buildings) {
+        Set<String> values = new HashSet<>();
+        values.add("-");
+        buildings.forEach(building -> {
+            values.add(building.getName());
+            for (int aisle = 1; aisle <= building.getAisles(); aisle++)
+                values.add(Integer.toString(aisle));
+            building.getSpecials().forEach(special -> values.add(special.nick));
+        });
+
+        int capacity = Integer.highestOneBit(Math.max(values.size(), 1) * 4 - 1) << 1;
+        this.table = new String[capacity];
+        this.mask = capacity - 1;
+        for (String value : values) {
+            int slot = value.hashCode() & mask;
+            while (table[slot] != null)
+                slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    /**
+     * @return The canonical instance of the characters in [start, end) of the source.
+     */
+    public String intern(String source, int start, int end) {
+        final int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + source.charAt(i);
+
+        for (int slot = hash & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            String candidate = table[slot];
+            if (candidate.length() == length && source.regionMatches(start, candidate, 0, length))
+                return candidate;
+        }
+
+        String value = source.substring(start, end);
+        if (overflow.size() >= MAX_OVERFLOW) {
+            String existing = overflow.get(value);
+            return existing == null ? value : existing;
+        }
+        String existing = overflow.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    public String intern(String value) {
+        return intern(value, 0, value.length());
+    }
+}
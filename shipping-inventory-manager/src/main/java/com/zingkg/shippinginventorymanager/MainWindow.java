@@ -1,21 +1,72 @@
 package com.zingkg.shippinginventorymanager;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.StringJoiner;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import javax.swing.JFileChooser;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.xml.sax.SAXException;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.xml.stream.XMLStreamException;
 
 public class MainWindow extends javax.swing.JFrame {
     private Inventory inventory;
+    private InventoryJournal journal;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Inventory operations");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService exports = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Inventory exports");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only touched on the event dispatch thread.
+    private boolean running;
+    private boolean exporting;
+    private volatile boolean cancelled;
+    private volatile boolean exportCancelled;
+    private final ProgressMonitor monitor = new ProgressMonitor() {
+        @Override
+        public void progress(long lines, long bytes, long totalBytes) {
+            SwingUtilities.invokeLater(() -> showProgress(lines, bytes, totalBytes));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+    private final ProgressMonitor exportMonitor = new ProgressMonitor() {
+        @Override
+        public void progress(long lines, long bytes, long totalBytes) {
+            SwingUtilities.invokeLater(() -> {
+                // The progress of an operation running at the same time comes first.
+                if (!running)
+                    showProgress(lines, bytes, totalBytes);
+            });
+        }
 
-    public MainWindow(Inventory inventory) {
+        @Override
+        public boolean isCancelled() {
+            return exportCancelled;
+        }
+    };
+
+    public MainWindow(Inventory inventory, InventoryJournal journal) {
         this.inventory = inventory;
+        this.journal = journal;
         initComponents();
     }
 
@@ -33,6 +84,9 @@ public class MainWindow extends javax.swing.JFrame {
         jScrollPane1 = new javax.swing.JScrollPane();
         errorTextPane = new javax.swing.JTextPane();
         updateQuantityButton = new javax.swing.JButton();
+        batchUpdateButton = new javax.swing.JButton();
+        progressBar = new javax.swing.JProgressBar();
+        cancelButton = new javax.swing.JButton();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Shipping Inventory Manager");
@@ -69,6 +123,24 @@ public class MainWindow extends javax.swing.JFrame {
             }
         });
 
+        batchUpdateButton.setText("Batch Update");
+        batchUpdateButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                batchUpdateButtonActionPerformed(evt);
+            }
+        });
+
+        progressBar.setMaximum(1000);
+        progressBar.setStringPainted(true);
+
+        cancelButton.setText("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cancelButtonActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -77,11 +149,18 @@ public class MainWindow extends javax.swing.JFrame {
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 513, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(progressBar, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(cancelButton))
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(loadButton)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                            .addComponent(updateQuantityButton)
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(updateQuantityButton)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(batchUpdateButton))
                             .addGroup(layout.createSequentialGroup()
                                 .addComponent(updateLocationsButton)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -99,22 +178,118 @@ public class MainWindow extends javax.swing.JFrame {
                     .addComponent(updateLocationsButton)
                     .addComponent(exportButton))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(updateQuantityButton)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(updateQuantityButton)
+                    .addComponent(batchUpdateButton))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.CENTER)
+                    .addComponent(progressBar, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(cancelButton))
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
         pack();
     }// </editor-fold>//GEN-END:initComponents
 
-    private void saveAndDisplayErrors(BufferedWriter bw, StringJoiner sj, String error) {
-        writeLine(bw, error);
-        sj.add(error);
+    private interface InventoryAction {
+        void apply(ErrorSink errors, ProgressMonitor monitor) throws IOException;
+    }
+
+    private interface UpdateAction {
+        /**
+         * @return True if the files were applied, false if they were rejected.
+         */
+        boolean apply(List<Path> files, ErrorSink errors, ProgressMonitor monitor)
+            throws IOException;
+    }
+
+    /**
+     * Runs the update in the background like {@link #runInBackground}, skipping the files that
+     * were applied before. Each skipped file is listed with the errors.
+     */
+    private void updateInBackground(List<Path> files, UpdateAction update) {
+        runInBackground((errors, monitor) -> {
+            List<Path> skipped = journal.applyNew(
+                files,
+                fresh -> update.apply(fresh, errors, monitor)
+            );
+            for (Path file : skipped) {
+                SwingUtilities.invokeLater(() ->
+                    appendError("Skipped " + file + ", it was applied before.")
+                );
+            }
+        });
+    }
+
+    /**
+     * Runs the action on the background thread so the window stays responsive. Progress and the
+     * first errors are shown as they come in and the action can be cancelled, in which case
+     * nothing is changed. The changes are committed to the journal once the action is done.
+     */
+    private void runInBackground(InventoryAction action) {
+        errorTextPane.setText("");
+        progressBar.setValue(0);
+        progressBar.setString("");
+        cancelled = false;
+        setRunning(true);
+        background.execute(() -> {
+            String outcome;
+            try (ErrorReport report = new ErrorReport(
+                Paths.get(ERROR_FILE_PATH),
+                DISPLAYED_ERRORS
+            )) {
+                action.apply(error -> {
+                    report.accept(error);
+                    if (report.getTotal() <= DISPLAYED_ERRORS)
+                        SwingUtilities.invokeLater(() -> appendError(error.getMessage()));
+                }, monitor);
+                journal.commit();
+                outcome = report.countSummary();
+            } catch (CancellationException e) {
+                outcome = "Cancelled, nothing was changed.";
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                outcome = "Failed: " + e;
+            }
+            final String message = outcome;
+            SwingUtilities.invokeLater(() -> {
+                if (!message.isEmpty())
+                    appendError(message);
+                setRunning(false);
+            });
+        });
+    }
+
+    private void setRunning(boolean running) {
+        this.running = running;
+        updateButtons();
+    }
+
+    /**
+     * Exports run alongside the other actions, so only a second export has to wait.
+     */
+    private void updateButtons() {
+        loadButton.setEnabled(!running);
+        updateLocationsButton.setEnabled(!running);
+        updateQuantityButton.setEnabled(!running);
+        batchUpdateButton.setEnabled(!running);
+        exportButton.setEnabled(!exporting);
+        cancelButton.setEnabled(running || exporting);
+    }
+
+    private void showProgress(long lines, long bytes, long totalBytes) {
+        if (totalBytes > 0)
+            progressBar.setValue((int) (bytes * progressBar.getMaximum() / totalBytes));
+        progressBar.setString(
+            lines + " lines, " + (bytes >> 10) + " of " + (totalBytes >> 10) + " KB"
+        );
     }
 
-    private void saveInventory() {
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(INVENTORY_FILE_PATH))) {
-            inventory.saveInventory().forEach(line -> writeLine(writer, line));
-        } catch (IOException e) {
+    private void appendError(String error) {
+        Document document = errorTextPane.getDocument();
+        try {
+            document.insertString(document.getLength(), error + '\n', null);
+        } catch (BadLocationException e) {
             e.printStackTrace();
         }
     }
@@ -122,81 +297,109 @@ public class MainWindow extends javax.swing.JFrame {
     private void loadButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_loadButtonActionPerformed
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            StringJoiner errorLines = new StringJoiner("\n");
-            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(ERROR_FILE_PATH))) {
-                File selected = fileChooser.getSelectedFile();
-                inventory.loadInventory(
-                    Files.lines(selected.toPath()),
-                    selected.getName()
-                ).forEach(error ->
-                    saveAndDisplayErrors(writer, errorLines, error)
-                );
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            errorTextPane.setText(errorLines.toString());
-            saveInventory();
+            File selected = fileChooser.getSelectedFile();
+            runInBackground((errors, monitor) ->
+                inventory.loadInventory(selected.toPath(), errors, monitor)
+            );
         }
     }//GEN-LAST:event_loadButtonActionPerformed
 
     private void updateLocationsButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_updateLocationsButtonActionPerformed
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            StringJoiner errorLines = new StringJoiner("\n");
-            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(ERROR_FILE_PATH))) {
-                File selected = fileChooser.getSelectedFile();
-                inventory.updateLocations(
-                        Files.lines(selected.toPath()),
-                        selected.getName()
-                ).forEach(error ->
-                    saveAndDisplayErrors(writer, errorLines, error)
-                );
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            errorTextPane.setText(errorLines.toString());
-            saveInventory();
+            File selected = fileChooser.getSelectedFile();
+            updateInBackground(
+                Collections.singletonList(selected.toPath()),
+                (files, errors, monitor) ->
+                    inventory.updateLocations(selected.toPath(), errors, monitor)
+            );
         }
     }//GEN-LAST:event_updateLocationsButtonActionPerformed
 
     private void exportButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exportButtonActionPerformed
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            saveInventory();
-            exportInventory(fileChooser.getSelectedFile());
+            exportInBackground(fileChooser.getSelectedFile());
         }
     }//GEN-LAST:event_exportButtonActionPerformed
 
-    private void exportInventory(File exportFile) {
-        try (BufferedWriter writer = Files.newBufferedWriter(exportFile.toPath())) {
-            inventory.exportInventory().forEach(line -> writeLine(writer, line));
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Writes the inventory as it is now on the export thread. The export is written from a
+     * {@link InventoryVersion}, so it neither waits for the action running in the background nor
+     * holds it up, and it never sees half of an update.
+     */
+    private void exportInBackground(File exportFile) {
+        final InventoryVersion version = inventory.getVersion();
+        exportCancelled = false;
+        exporting = true;
+        if (!running) {
+            progressBar.setValue(0);
+            progressBar.setString("");
+        }
+        updateButtons();
+        exports.execute(() -> {
+            String outcome;
+            try {
+                exportVersion(version, exportFile);
+                outcome = "Exported " + version.size() + " items to " + exportFile.getName() + '.';
+            } catch (CancellationException e) {
+                outcome = "Export cancelled.";
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                outcome = "Export failed: " + e;
+            }
+            final String message = outcome;
+            SwingUtilities.invokeLater(() -> {
+                appendError(message);
+                exporting = false;
+                updateButtons();
+            });
+        });
+    }
+
+    /**
+     * Writes the export, compressed if its name asks for it. A cancelled export is removed.
+     */
+    private void exportVersion(InventoryVersion version, File exportFile) throws IOException {
+        try (Writer writer = Compression.newBufferedWriter(exportFile.toPath())) {
+            version.exportInventory(writer, exportMonitor);
+        } catch (CancellationException e) {
+            Files.deleteIfExists(exportFile.toPath());
+            throw e;
         }
     }
 
+    private void cancelButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cancelButtonActionPerformed
+        cancelled = true;
+        exportCancelled = true;
+        cancelButton.setEnabled(false);
+    }//GEN-LAST:event_cancelButtonActionPerformed
+
     private void updateQuantityButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_updateQuantityButtonActionPerformed
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            StringJoiner errorLines = new StringJoiner("\n");
-            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(ERROR_FILE_PATH))) {
-                File selected = fileChooser.getSelectedFile();
-                inventory.updateQuantity(
-                    Files.lines(selected.toPath()),
-                    selected.getName()
-                ).forEach(error ->
-                    saveAndDisplayErrors(writer, errorLines, error)
-                );
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            errorTextPane.setText(errorLines.toString());
-            saveInventory();
+            File selected = fileChooser.getSelectedFile();
+            updateInBackground(
+                Collections.singletonList(selected.toPath()),
+                (files, errors, monitor) ->
+                    inventory.updateQuantity(selected.toPath(), errors, monitor)
+            );
         }
     }//GEN-LAST:event_updateQuantityButtonActionPerformed
 
-    private static final String INVENTORY_FILE_PATH = "internal/inventory.csv";
-    private static final String ERROR_FILE_PATH = "internal/error.txt";
+    private void batchUpdateButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_batchUpdateButtonActionPerformed
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setMultiSelectionEnabled(true);
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            List<Path> selected = Arrays.stream(fileChooser.getSelectedFiles())
+                .map(File::toPath)
+                .collect(Collectors.toList());
+            updateInBackground(selected, inventory::updateBatch);
+        }
+    }//GEN-LAST:event_batchUpdateButtonActionPerformed
+
+    private static final String ERROR_FILE_PATH = InventoryWorkspace.ERROR_FILE_PATH;
+    private static final int DISPLAYED_ERRORS = 200;
 
     /**
      * @param args the command line arguments
@@ -219,34 +422,24 @@ public class MainWindow extends javax.swing.JFrame {
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(() -> {
             try {
-                File inventoryFile = new File(INVENTORY_FILE_PATH);
-                new MainWindow(
-                    new Inventory(
-                        Inventory.parseBuildingSetup(new File("internal/inventory-setup.xml")),
-                        Files.lines(inventoryFile.toPath()),
-                        inventoryFile.getName()
-                    )
-                ).setVisible(true);
-            } catch (ParserConfigurationException | IOException | SAXException e) {
+                InventoryWorkspace workspace = InventoryWorkspace.open(error ->
+                    System.err.println(error.getMessage())
+                );
+                new MainWindow(workspace.getInventory(), workspace.getJournal()).setVisible(true);
+            } catch (IOException | XMLStreamException e) {
                 e.printStackTrace();
             }
         });
     }
 
-    private static void writeLine(BufferedWriter writer, String line) {
-        try {
-            writer.write(line);
-            writer.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton batchUpdateButton;
+    private javax.swing.JButton cancelButton;
     private javax.swing.JTextPane errorTextPane;
     private javax.swing.JButton exportButton;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JButton loadButton;
+    private javax.swing.JProgressBar progressBar;
     private javax.swing.JButton updateLocationsButton;
     private javax.swing.JButton updateQuantityButton;
     // End of variables declaration//GEN-END:variables
@@ -0,0 +1,285 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Reads a comma separated file line by line straight out of a memory mapped window of the file.
+ * Only the current line is ever copied onto the heap, and the copy buffer is reused between
+ * lines, so memory use stays flat regardless of the size of the file. Fields of the current line
+ * are addressed by index and only decoded into strings when asked for.
+ *
+ * A compressed file, see {@link Compression}, cannot be mapped. It is decompressed as it is read
+ * into a window on the heap instead, which keeps memory use just as flat.
+ */
+final class MappedLineReader implements CsvLine, Closeable {
+    private static final int WINDOW_SIZE = 1 << 26;
+    private static final int INFLATED_WINDOW_SIZE = 1 << 16;
+    private static final int MAX_FIELDS = 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Optional<InputStream> inflating;
+    private long end;
+    private ByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean ascii;
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    private int fieldCount;
+    private long bytesRead;
+
+    public MappedLineReader(Path path) throws IOException {
+        this(path, 0, -1);
+    }
+
+    /**
+     * Reads the lines in the byte range [start, end) of the file. An end of -1 reads to the end of
+     * the file. The range is expected to begin at the start of a line. A compressed file is only
+     * recognized when read from the start, its range is that of the decompressed lines.
+     */
+    MappedLineReader(Path path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            final Compression compression = start == 0 ?
+                Compression.detect(channel) :
+                Compression.NONE;
+            if (compression == Compression.NONE) {
+                this.inflating = Optional.empty();
+                this.end = end < 0 ? size : Math.min(end, size);
+            } else {
+                this.inflating = Optional.of(
+                    compression.inflate(Channels.newInputStream(channel))
+                );
+                // Not known until the decompressed data runs out.
+                this.end = end < 0 ? Long.MAX_VALUE : end;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.position = start;
+        this.windowStart = start;
+    }
+
+    /**
+     * Advances to the next line of the file.
+     *
+     * @return False if there are no more lines.
+     */
+    public boolean nextLine() throws IOException {
+        if (!available())
+            return false;
+
+        lineLength = 0;
+        ascii = true;
+        do {
+            final int windowLimit = window.limit();
+            int index = (int) (position - windowStart);
+            while (index < windowLimit) {
+                final byte b = window.get(index++);
+                if (b == '\n') {
+                    position = windowStart + index;
+                    finishLine();
+                    return true;
+                }
+                appendByte(b);
+            }
+            position = windowStart + windowLimit;
+        } while (available());
+        finishLine();
+        return true;
+    }
+
+    /**
+     * Moves the window onto the position if it has gone past the window.
+     *
+     * @return False if there is nothing left to read.
+     */
+    private boolean available() throws IOException {
+        if (window != null && position < windowStart + window.limit())
+            return true;
+        if (position >= end)
+            return false;
+
+        windowStart = position;
+        if (inflating.isPresent())
+            return inflate();
+        window = channel.map(
+            FileChannel.MapMode.READ_ONLY,
+            position,
+            Math.min(WINDOW_SIZE, end - position)
+        );
+        return true;
+    }
+
+    private boolean inflate() throws IOException {
+        if (window == null)
+            window = ByteBuffer.allocate(INFLATED_WINDOW_SIZE);
+        final int length = (int) Math.min(window.capacity(), end - position);
+        final int read = inflating.get().read(window.array(), 0, length);
+        if (read < 0) {
+            end = position;
+            window.limit(0);
+            return false;
+        }
+        window.limit(read);
+        return true;
+    }
+
+    private void appendByte(byte b) {
+        if (lineLength == line.length) {
+            byte[] grown = new byte[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        if (b < 0)
+            ascii = false;
+        line[lineLength++] = b;
+    }
+
+    private void finishLine() throws IOException {
+        bytesRead = inflating.isPresent() ? channel.position() : position;
+        if (lineLength > 0 && line[lineLength - 1] == '\r')
+            lineLength--;
+        split();
+    }
+
+    /**
+     * Records the field boundaries of the current line. Mirrors {@code String.split(",")} in that
+     * trailing empty fields are not counted.
+     */
+    private void split() {
+        fieldCount = 0;
+        int start = 0;
+        for (int i = 0; i < lineLength && fieldCount < MAX_FIELDS - 1; i++) {
+            if (line[i] == ',') {
+                fieldStarts[fieldCount] = start;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                start = i + 1;
+            }
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = lineLength;
+        fieldCount++;
+        if (lineLength == 0)
+            return;
+
+        while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1])
+            fieldCount--;
+    }
+
+    /**
+     * @return The number of non trailing-empty fields of the current line.
+     */
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return The given field of the current line decoded as a string.
+     */
+    @Override
+    public String field(int index) {
+        final int start = fieldStarts[index];
+        final int length = fieldEnds[index] - start;
+        if (ascii)
+            return new String(line, start, length, StandardCharsets.ISO_8859_1);
+        else
+            return new String(line, start, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return True if the given field of the current line is the optional value marker "-".
+     */
+    @Override
+    public boolean isOptionalField(int index) {
+        return fieldEnds[index] - fieldStarts[index] == 1 && line[fieldStarts[index]] == '-';
+    }
+
+    /**
+     * Parses the given field of the current line as a base 10 integer without decoding it.
+     *
+     * @throws InventoryParseException If the field is not a valid integer.
+     */
+    @Override
+    public int intField(int index) {
+        int i = fieldStarts[index];
+        final int fieldEnd = fieldEnds[index];
+        boolean negative = false;
+        if (i < fieldEnd && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        if (i == fieldEnd)
+            throw new InventoryParseException("Exception occurred when parsing a number.");
+
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            final int digit = line[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw new InventoryParseException("Exception occurred when parsing a number.");
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw new InventoryParseException("Exception occurred when parsing a number.");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            throw new InventoryParseException("Exception occurred when parsing a number.");
+        return (int) value;
+    }
+
+    /**
+     * @return The current line decoded as a string.
+     */
+    public String line() {
+        if (ascii)
+            return new String(line, 0, lineLength, StandardCharsets.ISO_8859_1);
+        else
+            return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The offset in the file just past the current line. For a compressed file it is
+     * how far the compressed data was read, which is a little ahead of the current line.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return True if the file is compressed, it can only be read from start to end.
+     */
+    public boolean isCompressed() {
+        return inflating.isPresent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        try {
+            if (inflating.isPresent())
+                inflating.get().close();
+        } finally {
+            channel.close();
+        }
+    }
+}
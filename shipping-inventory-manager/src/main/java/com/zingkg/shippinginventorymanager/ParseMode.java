@@ -0,0 +1,16 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * How {@link Inventory} parses inventory and update files read from disk.
+ */
+public enum ParseMode {
+    /**
+     * Parse and apply one line at a time on the calling thread.
+     */
+    SEQUENTIAL,
+    /**
+     * Split the file on line boundaries and parse the pieces on the common fork-join pool, then
+     * apply the parsed lines in file order on the calling thread.
+     */
+    PARALLEL
+}
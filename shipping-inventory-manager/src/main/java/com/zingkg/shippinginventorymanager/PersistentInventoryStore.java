@@ -0,0 +1,84 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the items in a {@link PersistentTreeMap}, so every change makes a new version of the map
+ * and a snapshot of the store is just a reference to the current version. Lookups take O(log n)
+ * instead of constant time, and items are always walked in item id order.
+ */
+final class PersistentInventoryStore implements InventoryStore {
+    private PersistentTreeMap<Item> items;
+
+    PersistentInventoryStore() {
+        this(PersistentTreeMap.empty());
+    }
+
+    private PersistentInventoryStore(PersistentTreeMap<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * @param sortedItems Items in item id order, without duplicate ids.
+     */
+    static PersistentInventoryStore copyOf(Stream<Item> sortedItems) {
+        List<Item> sorted = sortedItems.collect(Collectors.toList());
+        return new PersistentInventoryStore(PersistentTreeMap.ofSorted(sorted, Item::getItemId));
+    }
+
+    @Override
+    public Optional<Item> get(String itemId) {
+        return Optional.ofNullable(items.get(itemId));
+    }
+
+    @Override
+    public boolean contains(String itemId) {
+        return items.containsKey(itemId);
+    }
+
+    @Override
+    public void put(Item item) {
+        items = items.put(item.getItemId(), item);
+    }
+
+    @Override
+    public void remove(String itemId) {
+        items = items.remove(itemId);
+    }
+
+    @Override
+    public void clear() {
+        items = PersistentTreeMap.empty();
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public Stream<Item> items() {
+        return items.values();
+    }
+
+    @Override
+    public Stream<String> itemIds() {
+        return items.keys();
+    }
+
+    @Override
+    public Stream<Item> sortedItems() {
+        return items.values();
+    }
+
+    /**
+     * Takes O(1), the copy starts out sharing the current version of the map.
+     */
+    @Override
+    public InventoryStore snapshot() {
+        return new PersistentInventoryStore(items);
+    }
+}
@@ -0,0 +1,245 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable sorted map from strings to values. Changes return a new map and leave this one as it
+ * is, copying only the path from the root to the changed key, so both maps share everything else.
+ * The tree is kept balanced as an AVL tree, which bounds every lookup and change to O(log n).
+ *
+ * Since a map never changes, it can be read from any number of threads while another thread
+ * derives new maps from it, without any locking.
+ */
+final class PersistentTreeMap<V> {
+    private static final PersistentTreeMap<?> EMPTY = new PersistentTreeMap<>(null, 0);
+
+    private static final class Node<V> {
+        final String key;
+        final V value;
+        final Node<V> left;
+        final Node<V> right;
+        final int height;
+
+        Node(String key, V value, Node<V> left, Node<V> right, int height) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = height;
+        }
+    }
+
+    private final Node<V> root;
+    private final int size;
+
+    private PersistentTreeMap(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentTreeMap<V> empty() {
+        return (PersistentTreeMap<V>) EMPTY;
+    }
+
+    /**
+     * Builds a balanced map in O(n) from values already sorted by their key, without duplicates.
+     */
+    static <V> PersistentTreeMap<V> ofSorted(List<V> values, Function<V, String> key) {
+        return new PersistentTreeMap<>(build(values, key, 0, values.size()), values.size());
+    }
+
+    private static <V> Node<V> build(List<V> values, Function<V, String> key, int from, int to) {
+        if (from == to)
+            return null;
+
+        final int middle = (from + to) >>> 1;
+        final V value = values.get(middle);
+        return node(
+            key.apply(value),
+            value,
+            build(values, key, from, middle),
+            build(values, key, middle + 1, to)
+        );
+    }
+
+    /**
+     * @return The value of the key, or null if the map does not hold the key.
+     */
+    V get(String key) {
+        Node<V> node = root;
+        while (node != null) {
+            final int comparison = key.compareTo(node.key);
+            if (comparison < 0)
+                node = node.left;
+            else if (comparison > 0)
+                node = node.right;
+            else
+                return node.value;
+        }
+        return null;
+    }
+
+    boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return The map with the key set to the value, which must not be null.
+     */
+    PersistentTreeMap<V> put(String key, V value) {
+        final int added = containsKey(key) ? 0 : 1;
+        return new PersistentTreeMap<>(put(root, key, value), size + added);
+    }
+
+    /**
+     * @return The map without the key, or this map if it does not hold the key.
+     */
+    PersistentTreeMap<V> remove(String key) {
+        if (!containsKey(key))
+            return this;
+        return new PersistentTreeMap<>(remove(root, key), size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The values in key order.
+     */
+    Stream<V> values() {
+        return stream(node -> node.value);
+    }
+
+    /**
+     * @return The keys in order.
+     */
+    Stream<String> keys() {
+        return stream(node -> node.key);
+    }
+
+    private <T> Stream<T> stream(Function<Node<V>, T> field) {
+        final Deque<Node<V>> path = new ArrayDeque<>();
+        for (Node<V> node = root; node != null; node = node.left)
+            path.push(node);
+        Iterator<T> inOrder = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node<V> next = path.pop();
+                for (Node<V> node = next.right; node != null; node = node.left)
+                    path.push(node);
+                return field.apply(next);
+            }
+        };
+        return StreamSupport.stream(
+            Spliterators.spliterator(
+                inOrder,
+                size,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE
+            ),
+            false
+        );
+    }
+
+    private static <V> int height(Node<V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <V> Node<V> node(String key, V value, Node<V> left, Node<V> right) {
+        return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1);
+    }
+
+    /**
+     * Joins the subtrees under a new node, rotating once or twice if their heights are more than
+     * one apart.
+     */
+    private static <V> Node<V> balance(String key, V value, Node<V> left, Node<V> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return node(
+                    left.key,
+                    left.value,
+                    left.left,
+                    node(key, value, left.right, right)
+                );
+            }
+            return node(
+                left.right.key,
+                left.right.value,
+                node(left.key, left.value, left.left, left.right.left),
+                node(key, value, left.right.right, right)
+            );
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return node(
+                    right.key,
+                    right.value,
+                    node(key, value, left, right.left),
+                    right.right
+                );
+            }
+            return node(
+                right.left.key,
+                right.left.value,
+                node(key, value, left, right.left.left),
+                node(right.key, right.value, right.left.right, right.right)
+            );
+        }
+        return node(key, value, left, right);
+    }
+
+    private static <V> Node<V> put(Node<V> node, String key, V value) {
+        if (node == null)
+            return node(key, value, null, null);
+
+        final int comparison = key.compareTo(node.key);
+        if (comparison < 0)
+            return balance(node.key, node.value, put(node.left, key, value), node.right);
+        else if (comparison > 0)
+            return balance(node.key, node.value, node.left, put(node.right, key, value));
+        else
+            return new Node<>(key, value, node.left, node.right, node.height);
+    }
+
+    private static <V> Node<V> remove(Node<V> node, String key) {
+        final int comparison = key.compareTo(node.key);
+        if (comparison < 0)
+            return balance(node.key, node.value, remove(node.left, key), node.right);
+        else if (comparison > 0)
+            return balance(node.key, node.value, node.left, remove(node.right, key));
+
+        if (node.left == null)
+            return node.right;
+        if (node.right == null)
+            return node.left;
+        Node<V> successor = node.right;
+        while (successor.left != null)
+            successor = successor.left;
+        return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+    }
+
+    private static <V> Node<V> removeFirst(Node<V> node) {
+        if (node.left == null)
+            return node.right;
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+}
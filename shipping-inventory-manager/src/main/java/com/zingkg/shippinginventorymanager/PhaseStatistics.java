@@ -0,0 +1,74 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * How long one phase of the inventory operations took, one sample per operation. The histogram
+ * counts the samples in buckets of powers of two microseconds, bucket {@code i} holding the
+ * samples below {@code 2^i} microseconds, and the percentiles are the upper bounds of the bucket
+ * they fall in.
+ */
+public final class PhaseStatistics {
+    private final long count;
+    private final double totalMillis;
+    private final double maxMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final long[] histogram;
+
+    @ConstructorProperties({
+        "count",
+        "totalMillis",
+        "maxMillis",
+        "p50Millis",
+        "p90Millis",
+        "p99Millis",
+        "histogram"
+    })
+    public PhaseStatistics(
+        long count,
+        double totalMillis,
+        double maxMillis,
+        double p50Millis,
+        double p90Millis,
+        double p99Millis,
+        long[] histogram
+    ) {
+        this.count = count;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.histogram = histogram.clone();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+}
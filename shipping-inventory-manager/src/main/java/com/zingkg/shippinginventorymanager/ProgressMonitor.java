@@ -0,0 +1,31 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * Follows a long running inventory operation and tells it when to stop. Operations that take a
+ * monitor report to it every few thousand lines, and when it is cancelled they stop with a
+ * {@link java.util.concurrent.CancellationException} without changing the inventory.
+ */
+public interface ProgressMonitor {
+    /**
+     * Ignores progress and is never cancelled.
+     */
+    ProgressMonitor NONE = new ProgressMonitor() {
+        @Override
+        public void progress(long lines, long bytes, long totalBytes) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * @param lines The number of lines processed so far.
+     * @param bytes The number of bytes processed so far.
+     * @param totalBytes The number of bytes to process in total.
+     */
+    void progress(long lines, long bytes, long totalBytes);
+
+    boolean isCancelled();
+}
@@ -0,0 +1,170 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Serves items straight out of a memory mapped {@link InventorySnapshot}, with the changes made
+ * since the snapshot was taken kept in an overlay store. Items removed from the snapshot are
+ * remembered by id so they stay hidden.
+ */
+final class SnapshotInventoryStore implements InventoryStore {
+    private InventorySnapshot snapshot;
+    private final InventoryStore overlay;
+    // Persistent so that taking a snapshot of this store does not have to copy it.
+    private PersistentTreeMap<Boolean> removed = PersistentTreeMap.empty();
+    private int size;
+
+    public SnapshotInventoryStore(InventorySnapshot snapshot, InventoryStore overlay) {
+        this.snapshot = snapshot;
+        this.overlay = overlay;
+        this.size = snapshot.size() + overlay.size();
+    }
+
+    private SnapshotInventoryStore(
+        InventorySnapshot snapshot,
+        InventoryStore overlay,
+        PersistentTreeMap<Boolean> removed,
+        int size
+    ) {
+        this.snapshot = snapshot;
+        this.overlay = overlay;
+        this.removed = removed;
+        this.size = size;
+    }
+
+    private boolean inSnapshot(String itemId) {
+        return snapshot != null && !removed.containsKey(itemId) && snapshot.indexOf(itemId) >= 0;
+    }
+
+    @Override
+    public Optional<Item> get(String itemId) {
+        Optional<Item> item = overlay.get(itemId);
+        if (item.isPresent() || snapshot == null || removed.containsKey(itemId))
+            return item;
+        return snapshot.find(itemId);
+    }
+
+    @Override
+    public boolean contains(String itemId) {
+        return overlay.contains(itemId) || inSnapshot(itemId);
+    }
+
+    @Override
+    public void put(Item item) {
+        final String itemId = item.getItemId();
+        if (!overlay.contains(itemId)) {
+            if (inSnapshot(itemId)) {
+                // The snapshot copy is shadowed by the overlay copy, so it is hidden underneath.
+                removed = removed.put(itemId, Boolean.TRUE);
+            } else {
+                size++;
+            }
+        }
+        overlay.put(item);
+    }
+
+    @Override
+    public Optional<ItemUpdate> updateQuantity(Item update) {
+        Optional<ItemUpdate> change = overlay.updateQuantity(update);
+        if (change.isPresent())
+            return change;
+        return shadow(update.getItemId(), item -> item.withQuantity(update.getQuantity()))
+            .map(previous -> ItemUpdate.ofQuantity(previous, update.getQuantity()));
+    }
+
+    @Override
+    public Optional<ItemUpdate> updateLocations(Item update) {
+        Optional<ItemUpdate> change = overlay.updateLocations(update);
+        if (change.isPresent())
+            return change;
+        return shadow(update.getItemId(), item -> item.withLocationsOf(update))
+            .map(previous -> ItemUpdate.ofLocations(previous, update));
+    }
+
+    /**
+     * Hides the snapshot copy of the item underneath an updated copy in the overlay.
+     *
+     * @return The snapshot copy, or empty if the snapshot does not hold the item.
+     */
+    private Optional<Item> shadow(String itemId, UnaryOperator<Item> update) {
+        if (snapshot == null || removed.containsKey(itemId))
+            return Optional.empty();
+
+        Optional<Item> item = snapshot.find(itemId);
+        if (item.isPresent()) {
+            removed = removed.put(itemId, Boolean.TRUE);
+            overlay.put(update.apply(item.get()));
+        }
+        return item;
+    }
+
+    @Override
+    public void remove(String itemId) {
+        if (overlay.contains(itemId)) {
+            overlay.remove(itemId);
+            size--;
+        } else if (inSnapshot(itemId)) {
+            removed = removed.put(itemId, Boolean.TRUE);
+            size--;
+        }
+    }
+
+    @Override
+    public void clear() {
+        overlay.clear();
+        removed = PersistentTreeMap.empty();
+        snapshot = null;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Stream<Item> items() {
+        if (snapshot == null)
+            return overlay.items();
+        final PersistentTreeMap<Boolean> hidden = removed;
+        return Stream.concat(
+            snapshot.items().filter(item -> !hidden.containsKey(item.getItemId())),
+            overlay.items()
+        );
+    }
+
+    /**
+     * The snapshot is already in item id order, so this merges it with the overlay in one pass.
+     */
+    @Override
+    public Stream<Item> sortedItems() {
+        if (snapshot == null)
+            return overlay.sortedItems();
+        final PersistentTreeMap<Boolean> hidden = removed;
+        return InventoryStore.mergeSorted(
+            snapshot.items().filter(item -> !hidden.containsKey(item.getItemId())),
+            overlay.sortedItems()
+        );
+    }
+
+    @Override
+    public Stream<String> itemIds() {
+        if (snapshot == null)
+            return overlay.itemIds();
+        final PersistentTreeMap<Boolean> hidden = removed;
+        return Stream.concat(
+            snapshot.itemIds().filter(itemId -> !hidden.containsKey(itemId)),
+            overlay.itemIds()
+        );
+    }
+
+    /**
+     * Shares the memory mapped snapshot, which never changes, and takes a snapshot of the overlay.
+     */
+    @Override
+    public InventoryStore snapshot() {
+        return new SnapshotInventoryStore(snapshot, overlay.snapshot(), removed, size);
+    }
+}
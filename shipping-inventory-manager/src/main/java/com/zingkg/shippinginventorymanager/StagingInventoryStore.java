@@ -0,0 +1,137 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Collects changes on top of another store without touching it, so that a batch of updates can
+ * be checked against the inventory as it would be and then committed or thrown away as a whole.
+ * Clearing hides the whole base store, which is how a full load is staged.
+ *
+ * The base store is not expected to change while changes are staged on top of it, the size is
+ * kept as a running count from the size of the base store.
+ */
+final class StagingInventoryStore implements InventoryStore {
+    private final InventoryStore base;
+    private final Map<String, Item> staged = new TreeMap<>();
+    private final Set<String> removed = new HashSet<>();
+    private boolean cleared;
+    private int size;
+
+    public StagingInventoryStore(InventoryStore base) {
+        this.base = base;
+        this.size = base.size();
+    }
+
+    private boolean inBase(String itemId) {
+        return !cleared && !removed.contains(itemId) && base.contains(itemId);
+    }
+
+    @Override
+    public Optional<Item> get(String itemId) {
+        Item item = staged.get(itemId);
+        if (item != null)
+            return Optional.of(item);
+        if (cleared || removed.contains(itemId))
+            return Optional.empty();
+        return base.get(itemId);
+    }
+
+    @Override
+    public boolean contains(String itemId) {
+        return staged.containsKey(itemId) || inBase(itemId);
+    }
+
+    @Override
+    public void put(Item item) {
+        if (!contains(item.getItemId()))
+            size++;
+        removed.remove(item.getItemId());
+        staged.put(item.getItemId(), item);
+    }
+
+    @Override
+    public void remove(String itemId) {
+        final boolean wasStaged = staged.remove(itemId) != null;
+        if (inBase(itemId)) {
+            removed.add(itemId);
+            size--;
+        } else if (wasStaged) {
+            size--;
+        }
+    }
+
+    @Override
+    public void clear() {
+        staged.clear();
+        removed.clear();
+        cleared = true;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Stream<Item> items() {
+        if (cleared)
+            return staged.values().stream();
+        return Stream.concat(
+            base.items().filter(item ->
+                !staged.containsKey(item.getItemId()) && !removed.contains(item.getItemId())
+            ),
+            staged.values().stream()
+        );
+    }
+
+    @Override
+    public Stream<Item> sortedItems() {
+        if (cleared)
+            return staged.values().stream();
+        return InventoryStore.mergeSorted(
+            base.sortedItems().filter(item ->
+                !staged.containsKey(item.getItemId()) && !removed.contains(item.getItemId())
+            ),
+            staged.values().stream()
+        );
+    }
+
+    @Override
+    public Stream<String> itemIds() {
+        if (cleared)
+            return staged.keySet().stream();
+        return Stream.concat(
+            base.itemIds().filter(itemId ->
+                !staged.containsKey(itemId) && !removed.contains(itemId)
+            ),
+            staged.keySet().stream()
+        );
+    }
+
+    /**
+     * @return True if the staged changes start by clearing the base store.
+     */
+    public boolean isCleared() {
+        return cleared;
+    }
+
+    /**
+     * @return The ids of the base items that the batch removes.
+     */
+    public Stream<String> removedItemIds() {
+        return removed.stream();
+    }
+
+    /**
+     * @return The items that the batch adds or changes.
+     */
+    public Stream<Item> stagedItems() {
+        return staged.values().stream();
+    }
+}
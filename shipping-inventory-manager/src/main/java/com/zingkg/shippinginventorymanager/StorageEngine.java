@@ -0,0 +1,22 @@
+package com.zingkg.shippinginventorymanager;
+
+/**
+ * How {@link Inventory} keeps its items in memory.
+ */
+public enum StorageEngine {
+    /**
+     * One {@link Item} object per item id in a hash map.
+     */
+    HASH_MAP,
+    /**
+     * Quantities, locations and the item id index in primitive arrays. Items are only created
+     * when they are read, which keeps the memory used per item id to a few dozen bytes.
+     */
+    COLUMNAR,
+    /**
+     * One {@link Item} object per item id in a persistent tree. Lookups take O(log n), but the
+     * inventory can be read through an {@link InventoryVersion} on any thread while it is being
+     * changed.
+     */
+    PERSISTENT
+}
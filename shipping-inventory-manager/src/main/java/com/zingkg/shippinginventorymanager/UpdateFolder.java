@@ -0,0 +1,322 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.zingkg.shippinginventorymanager.InventoryError.Category;
+
+/**
+ * Watches a folder for location and quantity update files and applies each one to the inventory
+ * as soon as it has been written completely. Files are applied one at a time in the order they
+ * showed up, each as an all or nothing {@link Inventory#updateBatch batch} of one file whose kind
+ * is told apart by its header.
+ *
+ * A file is considered complete once its size and modification time have not changed for the
+ * settle time. Files whose names start with a dot or end in {@code .tmp} or {@code .part} are left
+ * alone, so writers can use such a name until they are done and rename the file.
+ *
+ * Applied files are moved to {@code done} and rejected files to {@code failed} inside the folder.
+ * When a file reported errors or warnings they are written next to it as {@code <file>.errors}.
+ * Files that cannot be read, such as a truncated compressed file, are rejected the same way with
+ * the reason in their errors. With a journal, files it has seen applied before are moved to
+ * {@code done} without being applied again, see {@link InventoryJournal#applyNew}.
+ */
+final class UpdateFolder implements Closeable {
+    static final String DONE_DIRECTORY = "done";
+    static final String FAILED_DIRECTORY = "failed";
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * Told about every file once it was applied or rejected and moved away.
+     */
+    interface Listener {
+        void processed(Result result) throws IOException;
+    }
+
+    static final class Result {
+        private final Path file;
+        private final boolean applied;
+        private final boolean skipped;
+        private final long failures;
+        private final long warnings;
+
+        Result(Path file, boolean applied, long failures, long warnings) {
+            this(file, applied, false, failures, warnings);
+        }
+
+        Result(Path file, boolean applied, boolean skipped, long failures, long warnings) {
+            this.file = file;
+            this.applied = applied;
+            this.skipped = skipped;
+            this.failures = failures;
+            this.warnings = warnings;
+        }
+
+        /**
+         * @return Where the file was moved to.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        public boolean isApplied() {
+            return applied;
+        }
+
+        /**
+         * @return True if the file was applied before and left alone this time.
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getWarnings() {
+            return warnings;
+        }
+    }
+
+    /**
+     * A file seen in the folder that has not been applied yet.
+     */
+    private static final class Pending {
+        long size = -1;
+        long modified = -1;
+        long stableSince;
+    }
+
+    private final Inventory inventory;
+    private final Optional<InventoryJournal> journal;
+    private final Path folder;
+    private final Path done;
+    private final Path failed;
+    private final long settleNanos;
+    private final Listener listener;
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param settleMillis How long a file has to stay unchanged before it is applied.
+     */
+    UpdateFolder(Inventory inventory, Path folder, long settleMillis, Listener listener) {
+        this(inventory, Optional.empty(), folder, settleMillis, listener);
+    }
+
+    /**
+     * @param journal Tells the files applied before, which are skipped, and records the files
+     * applied.
+     * @param settleMillis How long a file has to stay unchanged before it is applied.
+     */
+    UpdateFolder(
+        Inventory inventory,
+        Optional<InventoryJournal> journal,
+        Path folder,
+        long settleMillis,
+        Listener listener
+    ) {
+        this.inventory = inventory;
+        this.journal = journal;
+        this.folder = folder;
+        this.done = folder.resolve(DONE_DIRECTORY);
+        this.failed = folder.resolve(FAILED_DIRECTORY);
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.listener = listener;
+    }
+
+    /**
+     * Applies the files already in the folder and then every file dropped into it, until the
+     * folder is closed or the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(done);
+        Files.createDirectories(failed);
+        try (WatchService watcher = folder.getFileSystem().newWatchService()) {
+            folder.register(
+                watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+            );
+            // Registered first, so a file dropped during the scan is not missed.
+            scan();
+            while (!closed) {
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            scan();
+                        else
+                            track(folder.resolve((Path) event.context()));
+                    }
+                    if (!key.reset())
+                        throw new NoSuchFileException(folder.toString());
+                }
+                applySettled();
+            }
+        }
+    }
+
+    /**
+     * Picks up the files in the folder, oldest first, as if they had just been dropped.
+     */
+    private void scan() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+            for (Path file : entries)
+                files.add(file);
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (NoSuchFileException e) {
+                // Gone again already.
+            }
+        }
+        files.retainAll(modified.keySet());
+        Collections.sort(
+            files,
+            Comparator.comparing((Path file) -> modified.get(file)).thenComparing(Path::toString)
+        );
+        for (Path file : files)
+            track(file);
+    }
+
+    private void track(Path file) {
+        final String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part"))
+            return;
+        if (!pending.containsKey(file) && Files.isRegularFile(file))
+            pending.put(file, new Pending());
+    }
+
+    /**
+     * Applies the waiting files in arrival order, stopping at the first one still being written
+     * so a later file is never applied before an earlier one.
+     */
+    private void applySettled() throws IOException {
+        Iterator<Map.Entry<Path, Pending>> files = pending.entrySet().iterator();
+        while (files.hasNext()) {
+            Map.Entry<Path, Pending> entry = files.next();
+            final Path file = entry.getKey();
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                files.remove();
+                continue;
+            }
+
+            Pending state = entry.getValue();
+            final long now = System.nanoTime();
+            final long modified = attributes.lastModifiedTime().toMillis();
+            if (attributes.size() != state.size || modified != state.modified) {
+                state.size = attributes.size();
+                state.modified = modified;
+                state.stableSince = now;
+            }
+            if (now - state.stableSince < settleNanos)
+                return;
+
+            files.remove();
+            apply(file);
+        }
+    }
+
+    /**
+     * Applies the file and moves it away. A file that cannot be read, for example because it is
+     * corrupt, is rejected with the reason in its errors, so watching goes on with the next file.
+     */
+    private void apply(Path file) throws IOException {
+        final String name = file.getFileName().toString();
+        Path errorFile = folder.resolve("." + name + ".errors");
+        boolean skipped = false;
+        boolean applied = false;
+        final long failures;
+        final long total;
+        try (ErrorReport errors = new ErrorReport(errorFile, 0)) {
+            try {
+                final Optional<byte[]> digest = journal.isPresent() ?
+                    Optional.of(UpdateLedger.digest(file)) :
+                    Optional.empty();
+                skipped = digest.isPresent() && journal.get().isApplied(digest.get());
+                if (!skipped)
+                    applied = inventory.updateBatch(Collections.singletonList(file), errors);
+                if (applied && digest.isPresent())
+                    journal.get().applied(digest.get());
+            } catch (IOException | UncheckedIOException e) {
+                errors.accept(
+                    Category.UNREADABLE_FILE,
+                    "Updating inventory file " + name + " could not be read: " + e
+                );
+            }
+            failures = errors.getFailures();
+            total = errors.getTotal();
+        }
+
+        final boolean gone = !Files.exists(file);
+        if (skipped || gone) {
+            // Applied before, or taken away while it was being read.
+            Files.delete(errorFile);
+            if (!gone) {
+                Path target = unusedName(done, name);
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                listener.processed(new Result(target, false, true, 0, 0));
+            }
+            return;
+        }
+
+        Path target = unusedName(applied ? done : failed, name);
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        if (total > 0) {
+            Files.move(
+                errorFile,
+                target.resolveSibling(target.getFileName() + ".errors"),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        } else {
+            Files.delete(errorFile);
+        }
+        listener.processed(new Result(target, applied, failures, total - failures));
+    }
+
+    /**
+     * @return The name in the directory, numbered if a file of the same name was moved there.
+     */
+    private static Path unusedName(Path directory, String name) {
+        Path target = directory.resolve(name);
+        for (int copy = 1; Files.exists(target); copy++)
+            target = directory.resolve(name + '.' + copy);
+        return target;
+    }
+
+    /**
+     * Stops watching once the file being applied, if any, is done.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
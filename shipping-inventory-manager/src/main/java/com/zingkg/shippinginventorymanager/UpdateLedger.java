@@ -0,0 +1,164 @@
+package com.zingkg.shippinginventorymanager;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ledger of the update files applied to the inventory, so a file that is dropped again is
+ * recognized by its content and skipped without being parsed. Every file is known by the SHA-256
+ * digest of its bytes, and the ledger file holds nothing but these 32 byte digests one after the
+ * other, appended as files are applied.
+ *
+ * Applied files are only held in memory until {@link #commit()} appends them. A crash in the
+ * middle of an append leaves part of a digest at the end, which is dropped when the ledger is
+ * opened again. The {@link InventoryJournal} records applied files in its own entries as well, so
+ * a file whose changes were committed is never lost from the ledger.
+ */
+final class UpdateLedger implements Closeable {
+    static final int DIGEST_LENGTH = 32;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final Set<ByteBuffer> applied = new HashSet<>();
+    private final List<byte[]> pending = new ArrayList<>();
+
+    private UpdateLedger(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Reads the digests of the ledger file, creating it if there is none yet.
+     */
+    public static UpdateLedger open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            final long complete = channel.size() - channel.size() % DIGEST_LENGTH;
+            if (complete < channel.size())
+                channel.truncate(complete);
+            UpdateLedger ledger = new UpdateLedger(channel);
+            ByteBuffer digests = ByteBuffer.allocate((int) complete);
+            while (digests.hasRemaining()) {
+                if (channel.read(digests, digests.position()) < 0)
+                    throw new EOFException(file.toString());
+            }
+            for (int offset = 0; offset < complete; offset += DIGEST_LENGTH) {
+                byte[] digest = new byte[DIGEST_LENGTH];
+                System.arraycopy(digests.array(), offset, digest, 0, DIGEST_LENGTH);
+                ledger.applied.add(ByteBuffer.wrap(digest));
+            }
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Hashes the file as it is read, in time linear in its size and without holding it in memory.
+     */
+    static byte[] digest(Path file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    public boolean isApplied(byte[] digest) {
+        return applied.contains(ByteBuffer.wrap(digest));
+    }
+
+    /**
+     * Adds the file to the ledger, it is written out on the next commit.
+     */
+    public void applied(byte[] digest) {
+        if (applied.add(ByteBuffer.wrap(digest.clone())))
+            pending.add(digest.clone());
+    }
+
+    /**
+     * Appends the files applied since the last commit and makes them durable.
+     */
+    public void commit() throws IOException {
+        if (pending.isEmpty())
+            return;
+
+        ByteBuffer digests = ByteBuffer.allocate(pending.size() * DIGEST_LENGTH);
+        for (byte[] digest : pending)
+            digests.put(digest);
+        digests.flip();
+        long position = channel.size();
+        while (digests.hasRemaining())
+            position += channel.write(digests, position);
+        channel.force(false);
+        pending.clear();
+    }
+
+    /**
+     * @return The digest written as 64 lower case hexadecimal digits.
+     */
+    static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte value : digest) {
+            hex.append(Character.forDigit((value >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(value & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @throws InventoryParseException If the text is not a digest written by {@link #toHex}.
+     */
+    static byte[] fromHex(String hex) {
+        if (hex.length() != DIGEST_LENGTH * 2)
+            throw new InventoryParseException("Exception occurred when parsing digest.");
+
+        byte[] digest = new byte[DIGEST_LENGTH];
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                throw new InventoryParseException("Exception occurred when parsing digest.");
+            digest[i] = (byte) (high << 4 | low);
+        }
+        return digest;
+    }
+
+    /**
+     * Commits the files applied so far and closes the ledger file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.xml.stream.XMLStreamException;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class BuildingSetupJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path setup;
+    private Path compiled;
+
+    @Before
+    public void setUp() {
+        setup = folder.getRoot().toPath().resolve("inventory-setup.xml");
+        compiled = folder.getRoot().toPath().resolve("inventory-setup.bin");
+    }
+
+    private void writeSetup(String aisles) throws IOException {
+        Files.write(
+            setup,
+            (
+                "<?xml version=\"1.0\"?>\n" +
+                "<buildings>\n" +
+                "    <building name=\"1\">\n" +
+                "        <aisles>" + aisles + "</aisles>\n" +
+                "        <special name=\"Dock\" nick=\"D\"/>\n" +
+                "        <special name=\"Office\" nick=\"O\"/>\n" +
+                "    </building>\n" +
+                "    <building name=\"2\"><aisles>25</aisles></building>\n" +
+                "</buildings>\n"
+            ).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static List<String> describe(List<Building> buildings) {
+        return buildings.stream().map(building ->
+            building.getName() + ':' + building.getAisles() + ':' +
+            building.getSpecials()
+                .map(special -> special.name + '/' + special.nick)
+                .collect(Collectors.joining(","))
+        ).collect(Collectors.toList());
+    }
+
+    @Test
+    public void parseTest() throws IOException, XMLStreamException {
+        writeSetup("20");
+        assertThat(
+            describe(BuildingSetup.parse(setup)),
+            is(Arrays.asList("1:20:Dock/D,Office/O", "2:25:"))
+        );
+    }
+
+    @Test
+    public void compiledFormIsReusedTest() throws IOException, XMLStreamException {
+        writeSetup("20");
+        final FileTime modified = Files.getLastModifiedTime(setup);
+        assertThat(
+            describe(BuildingSetup.load(setup, compiled)),
+            is(Arrays.asList("1:20:Dock/D,Office/O", "2:25:"))
+        );
+        assertThat(Files.exists(compiled), is(true));
+
+        // Same size and modification time, so the XML is not read again.
+        writeSetup("30");
+        Files.setLastModifiedTime(setup, modified);
+        assertThat(
+            describe(BuildingSetup.load(setup, compiled)).get(0),
+            is("1:20:Dock/D,Office/O")
+        );
+    }
+
+    @Test
+    public void changedSetupIsParsedAgainTest() throws IOException, XMLStreamException {
+        writeSetup("20");
+        Files.setLastModifiedTime(setup, FileTime.fromMillis(1000000));
+        BuildingSetup.load(setup, compiled);
+
+        writeSetup("30");
+        Files.setLastModifiedTime(setup, FileTime.fromMillis(2000000));
+        assertThat(
+            describe(BuildingSetup.load(setup, compiled)).get(0),
+            is("1:30:Dock/D,Office/O")
+        );
+
+        Files.write(compiled, new byte[] { 1, 2, 3 });
+        assertThat(
+            describe(BuildingSetup.load(setup, compiled)).get(0),
+            is("1:30:Dock/D,Office/O")
+        );
+    }
+}
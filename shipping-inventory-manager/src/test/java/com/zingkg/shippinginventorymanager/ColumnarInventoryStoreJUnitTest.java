@@ -0,0 +1,122 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ColumnarInventoryStoreJUnitTest {
+    private static Item item(String itemId, int locations, Optional<Integer> quantity) {
+        return new Item(
+            itemId,
+            Stream.iterate(0, i -> i + 1).limit(locations).map(i ->
+                new PIL("b" + (i % 3), "" + i, i % 2 == 0 ? Optional.of("p" + i) : Optional.empty())
+            ),
+            quantity
+        );
+    }
+
+    private static String rows(InventoryStore store) {
+        return store.itemIds().sorted().map(itemId ->
+            store.get(itemId).get().toCSVRow()
+        ).collect(Collectors.joining("\n"));
+    }
+
+    private static List<String> sortedRows(InventoryStore store) {
+        return store.sortedItems().map(Item::toCSVRow).collect(Collectors.toList());
+    }
+
+    @Test
+    public void putGetRemoveTest() {
+        ColumnarInventoryStore store = new ColumnarInventoryStore();
+        store.put(item("fp1", 2, Optional.of(3)));
+        store.put(item("fp2", 0, Optional.empty()));
+        assertThat(store.size(), is(2));
+        assertThat(store.get("fp1").get().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.-,3"));
+        assertThat(store.get("fp2").get().toCSVRow(), is("fp2,-,-"));
+        assertThat(store.get("fp3").isPresent(), is(false));
+
+        store.put(item("fp1", 1, Optional.empty()));
+        assertThat(store.get("fp1").get().toCSVRow(), is("fp1,b0.0.p0,-"));
+        store.remove("fp1");
+        assertThat(store.contains("fp1"), is(false));
+        assertThat(store.size(), is(1));
+        store.clear();
+        assertThat(store.size(), is(0));
+        assertThat(store.items().count(), is(0L));
+        store.put(item("fp3", 3, Optional.of(1)));
+        store.put(item("fp4", 1, Optional.of(2)));
+        assertThat(store.get("fp3").get().toCSVRow(), is("fp3,b0.0.p0 Y b1.1.- Y b2.2.p2,1"));
+    }
+
+    @Test
+    public void updateInPlaceTest() {
+        for (InventoryStore store : Arrays.asList(
+            new HashInventoryStore(),
+            new ColumnarInventoryStore()
+        )) {
+            store.put(item("fp1", 2, Optional.of(3)));
+            store.put(item("fp2", 1, Optional.empty()));
+            ItemUpdate change = store.updateQuantity(item("fp1", 0, Optional.of(-7))).get();
+            assertThat(change.isLocationUpdate(), is(false));
+            assertThat(change.getPreviousQuantity(), is(Optional.of(3)));
+            assertThat(change.getLocationCount(), is(2));
+            assertThat(change.getPrevious().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.-,3"));
+            assertThat(change.getItem().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.-,-7"));
+            assertThat(store.get("fp1").get().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.-,-7"));
+
+            change = store.updateLocations(item("fp1", 3, Optional.empty())).get();
+            assertThat(change.isLocationUpdate(), is(true));
+            assertThat(change.getPreviousLocationCount(), is(2));
+            assertThat(change.getLocationCount(), is(3));
+            assertThat(change.getPrevious().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.-,-7"));
+            assertThat(change.getItem().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.- Y b2.2.p2,-7"));
+            assertThat(store.get("fp1").get().toCSVRow(), is("fp1,b0.0.p0 Y b1.1.- Y b2.2.p2,-7"));
+
+            Item missing = item("fp3", 1, Optional.of(1));
+            assertThat(store.updateQuantity(missing).isPresent(), is(false));
+            assertThat(store.updateLocations(missing).isPresent(), is(false));
+            assertThat(store.contains("fp3"), is(false));
+            assertThat(store.size(), is(2));
+            assertThat(
+                store.sortedItems().map(Item::toCSVRow).collect(Collectors.toList()),
+                is(Arrays.asList("fp1,b0.0.p0 Y b1.1.- Y b2.2.p2,-7", "fp2,b0.0.p0,-"))
+            );
+        }
+    }
+
+    @Test
+    public void matchesHashStoreTest() {
+        Random random = new Random(42);
+        InventoryStore expected = new HashInventoryStore();
+        InventoryStore actual = new ColumnarInventoryStore();
+        for (int i = 0; i < 200000; i++) {
+            final String itemId = "fp" + random.nextInt(5000);
+            // Walks in between merge new items into the order, or rebuild it after removals.
+            if (i % 25000 == 0 || i == 5000 || i == 9000)
+                assertThat(sortedRows(actual), is(sortedRows(expected)));
+            if (i >= 10000 && random.nextInt(4) == 0) {
+                expected.remove(itemId);
+                actual.remove(itemId);
+            } else {
+                Item item = item(
+                    itemId,
+                    random.nextInt(4),
+                    random.nextBoolean() ? Optional.of(random.nextInt()) : Optional.empty()
+                );
+                expected.put(item);
+                actual.put(item);
+            }
+        }
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(rows(actual), is(rows(expected)));
+        assertThat(sortedRows(actual), is(sortedRows(expected)));
+    }
+}
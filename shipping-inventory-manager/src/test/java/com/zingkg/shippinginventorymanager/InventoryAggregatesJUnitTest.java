@@ -0,0 +1,136 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class InventoryAggregatesJUnitTest {
+    private Inventory inventory;
+
+    @Before
+    public void setUp() {
+        inventory = new Inventory(
+            Stream.of(new Building("1", 20, Stream.empty()), new Building("2", 25, Stream.empty()))
+        );
+    }
+
+    private static Stream<String> lines(String header, String... rows) {
+        return Stream.concat(Stream.of(header), Arrays.stream(rows));
+    }
+
+    private static Map<String, Long> units(String... entries) {
+        Map<String, Long> units = new TreeMap<>();
+        for (int i = 0; i < entries.length; i += 2)
+            units.put(entries[i], Long.parseLong(entries[i + 1]));
+        return units;
+    }
+
+    private Stream<String> topItemIds(int count) {
+        return inventory.getTopItems(count).map(Item::getItemId);
+    }
+
+    @Test
+    public void totalsFollowUpdatesTest() {
+        inventory.loadInventory(
+            lines(
+                Inventory.INVENTORY_HEADER,
+                "fp1,1.2.3 Y 1.2.4 Y 2.1.-,5",
+                "fp2,1.3.1,7",
+                "fp3,1.2.1,-",
+                "fp4,2.1.1,7"
+            ),
+            "inventory.csv"
+        );
+        assertThat(inventory.getUnitsPerBuilding(), is(units("1", "12", "2", "12")));
+        assertThat(inventory.getUnitsPerAisle("1"), is(units("2", "5", "3", "7")));
+        assertThat(inventory.getUnitsInAisle("2", "1"), is(12L));
+        assertThat(
+            topItemIds(3).collect(Collectors.toList()),
+            is(Arrays.asList("fp2", "fp4", "fp1"))
+        );
+
+        inventory.updateLocations(
+            lines(Inventory.LOCATIONS_UPDATE_HEADER, "fp1,update,1.3.3", "fp4,delete,-"),
+            "locations.csv"
+        );
+        inventory.updateQuantity(
+            lines(Inventory.QUANTITY_UPDATE_HEADER, "fp3,update,4", "fp2,update,-", "fp5,add,9"),
+            "quantity.csv"
+        );
+        assertThat(inventory.getUnitsInBuilding("1"), is(9L));
+        assertThat(inventory.getUnitsInBuilding("2"), is(0L));
+        assertThat(inventory.getUnitsPerBuilding(), is(units("1", "9")));
+        assertThat(inventory.getUnitsPerAisle("1"), is(units("2", "4", "3", "5")));
+        assertThat(
+            topItemIds(5).collect(Collectors.toList()),
+            is(Arrays.asList("fp5", "fp1", "fp3"))
+        );
+
+        inventory.loadInventory(lines(Inventory.INVENTORY_HEADER), "empty.csv");
+        assertThat(inventory.getUnitsPerBuilding(), is(Collections.<String, Long>emptyMap()));
+        assertThat(inventory.getTopItems(1).count(), is(0L));
+    }
+
+    @Test
+    public void matchesScanTest() {
+        Random random = new Random(11);
+        inventory.loadInventory(lines(Inventory.INVENTORY_HEADER), "empty.csv");
+        for (int i = 0; i < 5000; i++) {
+            Item item = new Item(
+                "fp" + random.nextInt(300),
+                Stream.of(
+                    new PIL("" + (1 + random.nextInt(2)), "" + random.nextInt(5), Optional.empty()),
+                    new PIL("1", "" + random.nextInt(5), Optional.of("" + random.nextInt(3)))
+                ).limit(random.nextInt(3)),
+                random.nextInt(5) == 0 ? Optional.empty() : Optional.of(random.nextInt(200) - 50)
+            );
+            if (random.nextInt(4) == 0)
+                inventory.removeItem(item.getItemId());
+            else
+                inventory.putItem(item);
+        }
+
+        Map<String, Long> buildings = new TreeMap<>();
+        Map<String, Long> aisles = new TreeMap<>();
+        inventory.items().filter(item -> item.getQuantity().orElse(0) != 0).forEach(item -> {
+            final long units = item.getQuantity().get();
+            item.getLocations().map(PIL::getBuilding).distinct().forEach(building ->
+                buildings.merge(building, units, Long::sum)
+            );
+            item.getLocations().filter(location -> location.getBuilding().equals("1"))
+                .map(PIL::getAisle)
+                .distinct()
+                .forEach(aisle -> aisles.merge(aisle, units, Long::sum));
+        });
+        buildings.values().removeIf(units -> units == 0);
+        aisles.values().removeIf(units -> units == 0);
+        assertThat(inventory.getUnitsPerBuilding(), is(buildings));
+        assertThat(inventory.getUnitsPerAisle("1"), is(aisles));
+        assertThat(
+            topItemIds(20).collect(Collectors.toList()),
+            is(
+                inventory.items()
+                    .filter(item -> item.getQuantity().isPresent())
+                    .sorted(
+                        Comparator.comparing((Item item) -> -item.getQuantity().get())
+                            .thenComparing(Item::getItemId)
+                    )
+                    .limit(20)
+                    .map(Item::getItemId)
+                    .collect(Collectors.toList())
+            )
+        );
+    }
+}
@@ -0,0 +1,137 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class InventoryCommandJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteArrayOutputStream output;
+    private InventoryCommand command;
+
+    @Before
+    public void setUp() throws IOException {
+        Inventory inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        output = new ByteArrayOutputStream();
+        command = new InventoryCommand(
+            inventory,
+            folder.getRoot().toPath().resolve("error.txt"),
+            new PrintStream(output, true, "UTF-8")
+        );
+    }
+
+    private Path writeFile(String... lines) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.asList(lines));
+        return file;
+    }
+
+    private String output() {
+        String text = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        output.reset();
+        return text;
+    }
+
+    @Test
+    public void loadUpdateAndLookupTest() throws IOException {
+        Path load = writeFile(Inventory.INVENTORY_HEADER, "fp1,1.1.1,3", "fp2,1.2.1,-");
+        assertThat(command.run("load", load.toString()), is(InventoryCommand.EXIT_OK));
+        assertThat(output().startsWith("status=ok\nerrors=0\nwarnings=0\n"), is(true));
+
+        Path update = writeFile(Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,5", "fp9,update,1");
+        assertThat(
+            command.run("update-quantity", update.toString()),
+            is(InventoryCommand.EXIT_ERRORS)
+        );
+        assertThat(output().contains("\nUNKNOWN_ITEM=1\n"), is(true));
+
+        assertThat(command.run("item", "fp1"), is(InventoryCommand.EXIT_OK));
+        assertThat(output(), is(Inventory.INVENTORY_HEADER + "\nfp1,1.1.1,5\n"));
+        assertThat(command.run("item", "fp9"), is(InventoryCommand.EXIT_NOT_FOUND));
+        assertThat(command.run("locate", "1.2"), is(InventoryCommand.EXIT_OK));
+        assertThat(output(), is(Inventory.INVENTORY_HEADER + "\nfp2,1.2.1,-\n"));
+
+        assertThat(command.run("export", "-"), is(InventoryCommand.EXIT_OK));
+        assertThat(
+            output(),
+            is(Inventory.INVENTORY_HEADER + "\nfp1,1.1.1,5\nfp2,1.2.1,-\n")
+        );
+        assertThat(command.run("export", "-", "1"), is(InventoryCommand.EXIT_OK));
+        assertThat(
+            output(),
+            is(Inventory.INVENTORY_HEADER + "\nfp1,1.1.1,5\nfp2,1.2.1,-\n")
+        );
+        assertThat(command.run("export", "-", "none"), is(InventoryCommand.EXIT_USAGE));
+        assertThat(command.run("report", "1"), is(InventoryCommand.EXIT_OK));
+        assertThat(output(), is("building=1 units=5\naisle=1.1 units=5\ntop=fp1 quantity=5\n"));
+        assertThat(command.run("report", "-1"), is(InventoryCommand.EXIT_USAGE));
+        assertThat(command.run("unknown", "fp1"), is(InventoryCommand.EXIT_USAGE));
+        // Arguments that are not files are never taken for paths.
+        assertThat(command.run("item", "fp\u0000"), is(InventoryCommand.EXIT_NOT_FOUND));
+    }
+
+    @Test
+    public void appliedFilesAreSkippedTest() throws IOException {
+        Path internal = folder.newFolder().toPath();
+        Inventory inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        inventory.loadInventory(Stream.of(Inventory.INVENTORY_HEADER, "fp1,1.1.1,3"), "inventory");
+        try (UpdateLedger ledger = UpdateLedger.open(internal.resolve("applied-updates.bin"));
+            InventoryJournal journal = InventoryJournal.open(
+                inventory,
+                internal.resolve("inventory.bin"),
+                Long.MAX_VALUE,
+                Optional.of(ledger),
+                error -> { }
+            )) {
+            command = new InventoryCommand(
+                inventory,
+                Optional.of(journal),
+                internal.resolve("error.txt"),
+                new PrintStream(output, true, "UTF-8")
+            );
+            Path update = writeFile(Inventory.LOCATIONS_UPDATE_HEADER, "fp1,add,1.2.1");
+            assertThat(
+                command.run("update-locations", update.toString()),
+                is(InventoryCommand.EXIT_OK)
+            );
+            assertThat(output().startsWith("status=ok\n"), is(true));
+            assertThat(
+                command.run("update-locations", update.toString()),
+                is(InventoryCommand.EXIT_OK)
+            );
+            assertThat(output(), is("status=skipped\nskipped=" + update + "\n"));
+            assertThat(inventory.getItem("fp1").get().toCSVRow(), is("fp1,1.2.1,3"));
+
+            Path quantity = writeFile(Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,5");
+            assertThat(
+                command.run("batch", update.toString(), quantity.toString()),
+                is(InventoryCommand.EXIT_OK)
+            );
+            assertThat(output().contains("\nskipped=" + update + "\n"), is(true));
+            assertThat(inventory.getItem("fp1").get().getQuantity().get(), is(5));
+
+            // A file rejected for its header is not recorded, so it is tried again.
+            Path headerless = writeFile("fp1,update,6");
+            command.run("update-quantity", headerless.toString());
+            output();
+            command.run("update-quantity", headerless.toString());
+            assertThat(output().startsWith("status=skipped"), is(false));
+        }
+    }
+}
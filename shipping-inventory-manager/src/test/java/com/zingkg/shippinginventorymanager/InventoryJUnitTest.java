@@ -1,27 +1,49 @@
 package com.zingkg.shippinginventorymanager;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class InventoryJUnitTest {
     private Inventory inventory;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Stream<Building> buildings() {
+        return Stream.of(
+            new Building("1", 20, Stream.empty()),
+            new Building("2", 25, Stream.empty())
+        );
+    }
+
     @Before
     public void setUp() {
-        inventory = new Inventory(
-            Stream.of(new Building("1", 20, Stream.empty()), new Building("2", 25, Stream.empty())),
-            Stream.empty(),
-            "inventory.csv"
-        );
+        inventory = new Inventory(buildings(), Stream.empty(), "inventory.csv");
     }
 
     private String csvLine(String col1, String col2, String col3) {
@@ -94,6 +116,243 @@ public class InventoryJUnitTest {
         assertThat(errors.count(), is(2L));
     }
 
+    @Test
+    public void loadInventoryChecksAislesTest() {
+        inventory = new Inventory(
+            Stream.of(new Building("1", 3, Stream.of(new Special("Dock", "D"))))
+        );
+        List<String> errors = inventory.loadInventory(
+            inventoryStream(
+                Stream.of(
+                    csvLine("fp1", "1.3.1", "-"),
+                    csvLine("fp2", "1.D.1 Y 1.-.-", "-"),
+                    csvLine("fp3", "1.4.1", "-"),
+                    csvLine("fp4", "1.0.1", "-"),
+                    csvLine("fp5", "1.E.1", "-"),
+                    csvLine("fp6", "2.1.1", "-")
+                )
+            ),
+            "testFile.csv"
+        ).collect(Collectors.toList());
+        assertThat(
+            errors,
+            is(
+                Arrays.asList(
+                    "Loading testFile.csv line 4 has an unknown aisle",
+                    "Loading testFile.csv line 5 has an unknown aisle",
+                    "Loading testFile.csv line 6 has an unknown aisle",
+                    "Loading testFile.csv line 7 has an unknown building"
+                )
+            )
+        );
+        assertThat(inventory.getItem("fp2").isPresent(), is(true));
+    }
+
+    private Path writeFile(String... lines) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.asList(lines));
+        return file;
+    }
+
+    @Test
+    public void loadInventoryFileTest() throws IOException {
+        Path file = writeFile(
+            Inventory.INVENTORY_HEADER,
+            csvLine("fp1", "1.-.-", "-"),
+            csvLine("fp2", "1.2.3 Y 2.4.5", "5"),
+            csvLine("fp3", "1.2", "5"),
+            csvLine("fp4", "-", "10"),
+            "fp5,-",
+            csvLine("fp6", "3.1.1", "1")
+        );
+        List<String> errors = inventory.loadInventory(file).collect(Collectors.toList());
+        assertThat(errors.size(), is(4));
+        final String loading = "Loading " + file.getFileName();
+        assertThat(errors.get(0), is(loading + " line 4 has an invalid format."));
+        assertThat(errors.get(1), is(loading + " line 6 has errors."));
+        assertThat(errors.get(3), is(loading + " line 7 has an unknown building"));
+        assertThat(inventory.getItem("fp1").get().getQuantity().isPresent(), is(false));
+        assertThat(inventory.getItem("fp2").get().toCSVRow(), is("fp2,1.2.3 Y 2.4.5,5"));
+        assertThat(inventory.getItem("fp3").isPresent(), is(false));
+        assertThat(inventory.getItem("fp4").get().getQuantity().get(), is(10));
+        assertThat(inventory.getItem("fp6").isPresent(), is(false));
+    }
+
+    @Test
+    public void loadInventoryFileWithoutHeaderTest() throws IOException {
+        Path file = writeFile(csvLine("fp1", "1.1.1", "1"));
+        assertThat(inventory.loadInventory(file).count(), is(1L));
+        assertThat(inventory.getItem("fp1").isPresent(), is(false));
+    }
+
+    @Test
+    public void errorReportKeepsSampleTest() throws IOException {
+        Path file = writeFile(
+            Inventory.INVENTORY_HEADER,
+            csvLine("fp1", "1.1.1", "x"),
+            csvLine("fp2", "3.1.1", "1"),
+            csvLine("fp3", "1.1.1", "y"),
+            csvLine("fp3", "1.1.2", "1"),
+            csvLine("fp3", "1.1.3", "1")
+        );
+        Path errorFile = folder.newFile().toPath();
+        try (ErrorReport errors = new ErrorReport(errorFile, 2)) {
+            inventory.loadInventory(file, errors);
+            assertThat(errors.getTotal(), is(4L));
+            assertThat(errors.getFailures(), is(3L));
+            assertThat(errors.getCount(InventoryError.Category.INVALID_FORMAT), is(2L));
+            assertThat(errors.getCount(InventoryError.Category.UNKNOWN_BUILDING), is(1L));
+            assertThat(errors.getCount(InventoryError.Category.DUPLICATE_ITEM), is(1L));
+            assertThat(errors.getSample().size(), is(2));
+            assertThat(
+                errors.getSample().get(1).getMessage(),
+                is("Loading " + file.getFileName() + " line 3 has an unknown building")
+            );
+        }
+        assertThat(Files.readAllLines(errorFile).size(), is(4));
+    }
+
+    private Path writeLargeFile(String header, int lines, IntFunction<String> line)
+        throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(
+            file,
+            (Iterable<String>) Stream.concat(
+                Stream.of(header),
+                IntStream.range(0, lines).mapToObj(line)
+            )::iterator
+        );
+        return file;
+    }
+
+    /**
+     * Cancels the operation the first time it reports progress.
+     */
+    private static class CancellingMonitor implements ProgressMonitor {
+        private boolean cancelled;
+        private long bytes;
+
+        @Override
+        public void progress(long lines, long bytes, long totalBytes) {
+            this.bytes = bytes;
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    @Test
+    public void cancelledOperationsChangeNothingTest() throws IOException {
+        loadInventory();
+        List<String> before = inventory.saveInventory().collect(Collectors.toList());
+        Path load = writeLargeFile(Inventory.INVENTORY_HEADER, 20000, i ->
+            csvLine("fp" + i, "1.1." + i, "" + i)
+        );
+        Path update = writeLargeFile(Inventory.QUANTITY_UPDATE_HEADER, 20000, i ->
+            csvLine("fp" + (i % 4 + 1), i % 2 == 0 ? "delete" : "add", "" + i)
+        );
+        for (ParseMode mode : ParseMode.values()) {
+            inventory.setParseMode(mode);
+            CancellingMonitor monitor = new CancellingMonitor();
+            try {
+                inventory.loadInventory(load, error -> { }, monitor);
+                fail();
+            } catch (CancellationException e) {
+                assertThat(monitor.bytes > 0, is(true));
+                assertThat(inventory.saveInventory().collect(Collectors.toList()), is(before));
+            }
+            try {
+                inventory.updateQuantity(update, error -> { }, new CancellingMonitor());
+                fail();
+            } catch (CancellationException e) {
+                assertThat(inventory.saveInventory().collect(Collectors.toList()), is(before));
+            }
+        }
+
+        inventory.loadInventory(load, error -> { }, ProgressMonitor.NONE);
+        assertThat(inventory.size(), is(20000));
+    }
+
+    private List<String> loadAndUpdate(
+        Inventory inventory,
+        ParseMode mode,
+        Path load,
+        Path locations,
+        Path quantity
+    ) throws IOException {
+        inventory.setParseMode(mode);
+        List<String> results = inventory.loadInventory(load).collect(Collectors.toList());
+        results.addAll(inventory.updateLocations(locations).collect(Collectors.toList()));
+        results.addAll(inventory.updateQuantity(quantity).collect(Collectors.toList()));
+        results.addAll(inventory.exportInventory().collect(Collectors.toList()));
+        return results;
+    }
+
+    @Test
+    public void locationsSharePooledNamesTest() throws IOException {
+        inventory.loadInventory(
+            writeFile(
+                Inventory.INVENTORY_HEADER,
+                csvLine("fp1", "1.2.3", "-"),
+                csvLine("fp2", "1.2.4 Y 2.21.1", "5")
+            )
+        );
+        List<PIL> fp1 = inventory.getItem("fp1").get().getLocations().collect(Collectors.toList());
+        List<PIL> fp2 = inventory.getItem("fp2").get().getLocations().collect(Collectors.toList());
+        assertThat(fp1.get(0).getBuilding(), sameInstance(fp2.get(0).getBuilding()));
+        assertThat(fp1.get(0).getAisle(), sameInstance(fp2.get(0).getAisle()));
+        assertThat(fp2.get(1).getAisle(), is("21"));
+    }
+
+    @Test
+    public void parallelParseMatchesSequentialTest() throws IOException {
+        final int lines = 150000;
+        Path load = writeLargeFile(Inventory.INVENTORY_HEADER, lines, i -> {
+            if (i % 997 == 0)
+                return "broken" + i;
+            else if (i % 1009 == 0)
+                return csvLine("fp" + i, "9.1.1", "1");
+            else
+                return csvLine("fp" + (i % 120000), "1." + (i % 20) + '.' + i, "" + i);
+        });
+        Path locations = writeLargeFile("item number,operation,pil", lines, i -> {
+            if (i % 991 == 0)
+                return csvLine("fp" + i, "update", "1.1.1");
+            else
+                return csvLine("fp" + (i % 130000), i % 3 == 0 ? "delete" : "add", "2.1." + i);
+        });
+        Path quantity = writeLargeFile("item number,operation,quantity", lines, i ->
+            csvLine("fp" + (i % 140000), i % 5 == 0 ? "update" : "add", i % 7 == 0 ? "x" : "" + i)
+        );
+
+        List<String> sequential = loadAndUpdate(
+            inventory,
+            ParseMode.SEQUENTIAL,
+            load,
+            locations,
+            quantity
+        );
+        List<String> parallel = loadAndUpdate(
+            new Inventory(buildings(), StorageEngine.HASH_MAP),
+            ParseMode.PARALLEL,
+            load,
+            locations,
+            quantity
+        );
+        assertThat(parallel, is(sequential));
+        List<String> columnar = loadAndUpdate(
+            new Inventory(buildings(), StorageEngine.COLUMNAR),
+            ParseMode.PARALLEL,
+            load,
+            locations,
+            quantity
+        );
+        assertThat(columnar, is(sequential));
+    }
+
     @Test
     public void updateLocationsTest() {
         loadInventory();
@@ -177,6 +436,106 @@ public class InventoryJUnitTest {
         assertThat(fp4.getLocations().count(), is(0L));
     }
 
+    @Test
+    public void smallestQuantityIsRejectedTest() throws IOException {
+        // The smallest int stands in for "-" where quantities are kept as plain ints.
+        Path file = writeFile(
+            Inventory.INVENTORY_HEADER,
+            csvLine("fp1", "1.1.1", "-2147483648"),
+            csvLine("fp2", "1.1.2", "-2147483647")
+        );
+        List<String> errors = inventory.loadInventory(file).collect(Collectors.toList());
+        assertThat(
+            errors,
+            is(Arrays.asList("Loading " + file.getFileName() + " line 2 has an invalid format."))
+        );
+        assertThat(inventory.getItem("fp1").isPresent(), is(false));
+        assertThat(inventory.getItem("fp2").get().toCSVRow(), is("fp2,1.1.2,-2147483647"));
+
+        Stream<String> updateErrors = inventory.updateQuantity(
+            updateQuantityStream(Stream.of(csvLine("fp2", "update", "-2147483648"))),
+            "updateQuantity.csv"
+        );
+        assertThat(updateErrors.count(), is(1L));
+        assertThat(inventory.getItem("fp2").get().toCSVRow(), is("fp2,1.1.2,-2147483647"));
+    }
+
+    @Test
+    public void updateBatchTest() throws IOException {
+        loadInventory();
+        List<String> errors = inventory.updateBatch(
+            Arrays.asList(
+                writeFile(
+                    Inventory.LOCATIONS_UPDATE_HEADER,
+                    csvLine("fp1", "update", "1.1.1"),
+                    csvLine("fp5", "add", "2.2.2")
+                ),
+                writeFile(
+                    Inventory.QUANTITY_UPDATE_HEADER,
+                    csvLine("fp5", "update", "7"),
+                    csvLine("fp2", "delete", "-")
+                )
+            )
+        ).collect(Collectors.toList());
+        assertThat(errors, is(Collections.<String>emptyList()));
+        assertThat(inventory.getItem("fp1").get().toCSVRow(), is("fp1,1.1.1,-"));
+        assertThat(inventory.getItem("fp2").isPresent(), is(false));
+        assertThat(inventory.getItem("fp5").get().toCSVRow(), is("fp5,2.2.2,7"));
+    }
+
+    @Test
+    public void updateBatchIsAllOrNothingTest() throws IOException {
+        loadInventory();
+        List<String> before = inventory.saveInventory().collect(Collectors.toList());
+        List<String> errors = inventory.updateBatch(
+            Arrays.asList(
+                writeFile(
+                    Inventory.QUANTITY_UPDATE_HEADER,
+                    csvLine("fp1", "update", "2"),
+                    csvLine("fp2", "delete", "-")
+                ),
+                writeFile(
+                    Inventory.LOCATIONS_UPDATE_HEADER,
+                    csvLine("fp2", "update", "1.1.1"),
+                    csvLine("fp3", "move", "1.1.1")
+                ),
+                writeFile(csvLine("fp4", "update", "1"))
+            )
+        ).collect(Collectors.toList());
+        assertThat(errors.size(), is(4));
+        assertThat(inventory.saveInventory().collect(Collectors.toList()), is(before));
+    }
+
+    private static List<String> itemIds(Stream<Item> items) {
+        return items.map(Item::getItemId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void locationIndexTest() {
+        loadInventory();
+        assertThat(
+            itemIds(inventory.getItemsInBuilding("1")),
+            is(Arrays.asList("fp1", "fp2", "fp3"))
+        );
+        assertThat(itemIds(inventory.getItemsInAisle("1", "2")), is(Arrays.asList("fp2", "fp3")));
+        assertThat(itemIds(inventory.getItemsAt("1", "2", "3")), is(Arrays.asList("fp2")));
+        assertThat(itemIds(inventory.getItemsAt("1", "-", "-")), is(Arrays.asList("fp1")));
+
+        inventory.updateLocations(
+            updateLocationsStream(
+                Stream.of(
+                    csvLine("fp2", "update", "2.2.3"),
+                    csvLine("fp3", "delete", "-"),
+                    csvLine("fp4", "add", "1.2.2 Y 1.2.9")
+                )
+            ),
+            "updateLocations.csv"
+        );
+        assertThat(itemIds(inventory.getItemsInAisle("1", "2")), is(Arrays.asList("fp4")));
+        assertThat(itemIds(inventory.getItemsAt("2", "2", "3")), is(Arrays.asList("fp2")));
+        assertThat(itemIds(inventory.getItemsInBuilding("3")), is(Collections.<String>emptyList()));
+    }
+
     @Test
     public void saveInventoryTest() {
         loadInventory();
@@ -211,9 +570,185 @@ public class InventoryJUnitTest {
         );
         assertThat(inventoryLines.size(), is(5));
         assertThat(inventoryLines.get(0), is(Inventory.INVENTORY_HEADER));
-        assertThat(getItemId(inventoryLines.get(1)), is("fp1"));
+        assertThat(inventoryLines.get(1), is("fp1,1.2.2,-"));
         assertThat(getItemId(inventoryLines.get(2)), is("fp5"));
         assertThat(getItemId(inventoryLines.get(3)), is("fp8"));
         assertThat(getItemId(inventoryLines.get(4)), is("fp9"));
     }
+
+    @Test
+    public void writeInventoryTest() throws IOException {
+        inventory.loadInventory(
+            inventoryStream(
+                IntStream.range(0, 10000).mapToObj(
+                    i -> csvLine("fp" + (i * 7919 % 10000), "1.2." + i + " Y 2.-.-", "" + i)
+                )
+            ),
+            "largeInventory.csv"
+        );
+        StringWriter saved = new StringWriter();
+        inventory.saveInventory(saved);
+        assertThat(
+            saved.toString(),
+            is(inventory.saveInventory().collect(Collectors.joining("\n", "", "\n")))
+        );
+
+        StringWriter exported = new StringWriter();
+        inventory.exportInventory(exported);
+        assertThat(
+            exported.toString(),
+            is(inventory.exportInventory().collect(Collectors.joining("\n", "", "\n")))
+        );
+    }
+
+    @Test
+    public void versionTest() {
+        Inventory versioned = new Inventory(buildings(), StorageEngine.PERSISTENT);
+        versioned.loadInventory(
+            inventoryStream(Stream.of(csvLine("fp1", "1.2.3", "5"), csvLine("fp2", "1.2.4", "6"))),
+            "inventory.csv"
+        );
+        InventoryVersion loaded = versioned.getVersion();
+        versioned.updateQuantity(
+            updateQuantityStream(
+                Stream.of(csvLine("fp1", "update", "7"), csvLine("fp3", "add", "1"))
+            ),
+            "quantity.csv"
+        );
+        assertThat(
+            loaded.exportInventory().collect(Collectors.toList()),
+            is(Arrays.asList(Inventory.INVENTORY_HEADER, "fp1,1.2.3,5", "fp2,1.2.4,6"))
+        );
+        assertThat(versioned.getVersion().getItem("fp1").get().toCSVRow(), is("fp1,1.2.3,7"));
+        assertThat(versioned.getVersion().size(), is(3));
+
+        try {
+            inventory.getVersion();
+            fail();
+        } catch (IllegalStateException e) {
+            // Only the persistent engine keeps versions.
+        }
+    }
+
+    @Test
+    public void versionReadWhileUpdatingTest() throws Exception {
+        Inventory versioned = new Inventory(buildings(), StorageEngine.PERSISTENT);
+        versioned.loadInventory(
+            inventoryStream(
+                IntStream.range(0, 1000).mapToObj(i -> csvLine("fp" + i, "1.2.3", "0"))
+            ),
+            "inventory.csv"
+        );
+        AtomicBoolean updating = new AtomicBoolean(true);
+        AtomicReference<String> inconsistent = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (updating.get()) {
+                StringWriter export = new StringWriter();
+                try {
+                    versioned.getVersion().exportInventory(export);
+                } catch (IOException e) {
+                    inconsistent.set(e.toString());
+                }
+                // Every update sets all quantities at once, a version never mixes two updates.
+                long quantities = Arrays.stream(export.toString().split("\n"))
+                    .skip(1)
+                    .map(row -> row.substring(row.lastIndexOf(',')))
+                    .distinct()
+                    .count();
+                if (quantities != 1)
+                    inconsistent.set(export.toString());
+            }
+        });
+        reader.start();
+        for (int quantity = 1; quantity <= 200; quantity++) {
+            final int next = quantity;
+            versioned.updateQuantity(
+                updateQuantityStream(
+                    IntStream.range(0, 1000).mapToObj(i -> csvLine("fp" + i, "update", "" + next))
+                ),
+                "quantity.csv"
+            );
+        }
+        updating.set(false);
+        reader.join();
+        assertThat(inconsistent.get(), is((String) null));
+        assertThat(versioned.getVersion().getItem("fp999").get().toCSVRow(), is("fp999,1.2.3,200"));
+    }
+
+    @Test
+    public void externalSortExportTest() throws IOException {
+        inventory.loadInventory(
+            inventoryStream(
+                Stream.concat(
+                    IntStream.range(0, 20000).mapToObj(
+                        i -> csvLine("fp" + (i * 7919 % 20000), "1.2." + i, "" + i)
+                    ),
+                    // Ids that sort differently from their rows if the rows were compared whole.
+                    Stream.of(csvLine("fp1!", "1.1.1", "1"), csvLine("fp1-", "2.1.1", "-"))
+                )
+            ),
+            "largeInventory.csv"
+        );
+        StringWriter expected = new StringWriter();
+        inventory.exportInventory(expected);
+
+        Path temporary = folder.newFolder().toPath();
+        for (long memoryBudget : new long[] { 1 << 12, 1 << 16, 1 << 30 }) {
+            StringWriter exported = new StringWriter();
+            inventory.exportInventory(exported, temporary, memoryBudget);
+            assertThat(exported.toString(), is(expected.toString()));
+            try (Stream<Path> left = Files.list(temporary)) {
+                assertThat(left.count(), is(0L));
+            }
+        }
+    }
+
+    @Test
+    public void compressedFilesTest() throws IOException {
+        inventory.loadInventory(
+            inventoryStream(
+                IntStream.range(0, 20000).mapToObj(
+                    i -> csvLine("fp" + i, "1.2." + i + " Y 2.3.-", "" + i)
+                )
+            ),
+            "largeInventory.csv"
+        );
+        Path plain = folder.getRoot().toPath().resolve("inventory.csv");
+        try (Writer writer = Compression.newBufferedWriter(plain)) {
+            inventory.exportInventory(writer);
+        }
+        for (String name : new String[] { "inventory.csv.gz", "inventory.csv.zz" }) {
+            Path compressed = folder.getRoot().toPath().resolve(name);
+            try (Writer writer = Compression.newBufferedWriter(compressed)) {
+                inventory.exportInventory(writer);
+            }
+            try (FileChannel channel = FileChannel.open(compressed)) {
+                assertThat(Compression.detect(channel), is(Compression.forFileName(compressed)));
+            }
+            assertThat(Files.size(compressed) * 4 < Files.size(plain), is(true));
+
+            Inventory loaded = new Inventory(buildings());
+            assertThat(loaded.loadInventory(compressed).count(), is(0L));
+            assertThat(
+                loaded.exportInventory().collect(Collectors.toList()),
+                is(inventory.exportInventory().collect(Collectors.toList()))
+            );
+        }
+
+        Path update = folder.getRoot().toPath().resolve("quantity.zz");
+        try (Writer writer = Compression.newBufferedWriter(update)) {
+            writer.write(Inventory.QUANTITY_UPDATE_HEADER + "\nfp7,update,70\n");
+        }
+        // The header of a zlib stream flags the preset dictionary.
+        assertThat((Files.readAllBytes(update)[1] & 0x20) != 0, is(true));
+        assertThat(inventory.updateQuantity(update).count(), is(0L));
+        assertThat(inventory.getItem("fp7").get().toCSVRow(), is("fp7,1.2.7 Y 2.3.-,70"));
+
+        // "80" makes a valid zlib header, but plain text never names the dictionary.
+        Path text = folder.getRoot().toPath().resolve("text.zz");
+        Files.write(text, Arrays.asList("80123,update,5"));
+        try (FileChannel channel = FileChannel.open(text)) {
+            assertThat(Compression.detect(channel), is(Compression.NONE));
+        }
+    }
 }
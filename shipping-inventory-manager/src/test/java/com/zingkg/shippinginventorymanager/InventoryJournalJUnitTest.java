@@ -0,0 +1,210 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class InventoryJournalJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path inventoryFile;
+    private Path snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        inventoryFile = folder.getRoot().toPath().resolve("inventory.csv");
+        snapshot = folder.getRoot().toPath().resolve("inventory.bin");
+        Files.write(
+            inventoryFile,
+            Arrays.asList(Inventory.INVENTORY_HEADER, "fp1,1.1.1,1", "fp2,1.2.-,2")
+        );
+    }
+
+    private Inventory newInventory() throws IOException {
+        Inventory inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        Optional<InventorySnapshot> latest = InventorySnapshot.openLatest(snapshot);
+        if (latest.isPresent())
+            inventory.openSnapshot(latest.get());
+        else
+            inventory.loadInventory(inventoryFile);
+        return inventory;
+    }
+
+    private InventoryJournal openJournal(Inventory inventory, long threshold) throws IOException {
+        List<InventoryError> errors = new ArrayList<>();
+        InventoryJournal journal = InventoryJournal.open(
+            inventory,
+            snapshot,
+            threshold,
+            errors::add
+        );
+        assertThat(errors.size(), is(0));
+        return journal;
+    }
+
+    private static List<String> export(Inventory inventory) {
+        return inventory.exportInventory().collect(Collectors.toList());
+    }
+
+    private static void update(Inventory inventory) {
+        inventory.updateQuantity(
+            Stream.of(Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,5", "fp3,add,7"),
+            "quantity.csv"
+        );
+        inventory.updateLocations(
+            Stream.of(Inventory.LOCATIONS_UPDATE_HEADER, "fp2,delete,-", "fp3,update,1.3.3"),
+            "locations.csv"
+        );
+    }
+
+    @Test
+    public void replayTest() throws IOException {
+        Inventory inventory = newInventory();
+        InventoryJournal journal = openJournal(inventory, Long.MAX_VALUE);
+        update(inventory);
+        journal.commit();
+        journal.close();
+
+        assertThat(InventorySnapshot.openLatest(snapshot).isPresent(), is(false));
+        // A change of the quantity alone is journaled without the locations of the item.
+        List<String> entries = Files.readAllLines(snapshot.resolveSibling("inventory.bin.journal"));
+        assertThat(entries.contains("Q,fp1,5"), is(true));
+        Inventory replayed = newInventory();
+        openJournal(replayed, Long.MAX_VALUE).close();
+        assertThat(export(replayed), is(export(inventory)));
+        assertThat(replayed.getItem("fp2").isPresent(), is(false));
+        assertThat(replayed.getItem("fp3").get().toCSVRow(), is("fp3,1.3.3,7"));
+    }
+
+    @Test
+    public void compactionTest() throws IOException {
+        Inventory inventory = newInventory();
+        InventoryJournal journal = openJournal(inventory, 1);
+        update(inventory);
+        journal.commit();
+        journal.awaitCompaction();
+        journal.close();
+
+        Path journalFile = snapshot.resolveSibling("inventory.bin.journal");
+        assertThat(Files.size(journalFile), is(0L));
+        assertThat(Files.exists(snapshot.resolveSibling("inventory.bin.1")), is(true));
+        Path compactingFile = snapshot.resolveSibling("inventory.bin.journal.compacting");
+        assertThat(Files.exists(compactingFile), is(false));
+        Inventory reloaded = newInventory();
+        assertThat(export(reloaded), is(export(inventory)));
+    }
+
+    @Test
+    public void failedCompactionIsReportedAndRetriedTest() throws IOException {
+        // A directory in place of the temporary snapshot file makes writing the snapshot fail.
+        Path temporary = snapshot.resolveSibling("inventory.bin.tmp");
+        Files.createDirectory(temporary);
+        Files.createFile(temporary.resolve("blocker"));
+
+        Inventory inventory = newInventory();
+        List<InventoryError> errors = new ArrayList<>();
+        InventoryJournal journal = InventoryJournal.open(inventory, snapshot, 1, errors::add);
+        update(inventory);
+        journal.commit();
+        journal.awaitCompaction();
+        assertThat(errors.size(), is(1));
+        assertThat(errors.get(0).getCategory(), is(InventoryError.Category.COMPACTION_FAILED));
+        Path compactingFile = snapshot.resolveSibling("inventory.bin.journal.compacting");
+        assertThat(Files.exists(compactingFile), is(true));
+
+        Files.delete(temporary.resolve("blocker"));
+        Files.delete(temporary);
+        inventory.updateQuantity(
+            Stream.of(Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,8"),
+            "quantity.csv"
+        );
+        journal.commit();
+        journal.close();
+        assertThat(errors.size(), is(1));
+        assertThat(Files.exists(compactingFile), is(false));
+        assertThat(Files.exists(snapshot.resolveSibling("inventory.bin.1")), is(true));
+        assertThat(export(newInventory()), is(export(inventory)));
+    }
+
+    @Test
+    public void tornEntryIsDroppedTest() throws IOException {
+        Inventory inventory = newInventory();
+        InventoryJournal journal = openJournal(inventory, Long.MAX_VALUE);
+        update(inventory);
+        journal.close();
+        Files.write(
+            snapshot.resolveSibling("inventory.bin.journal"),
+            "P,fp1,1.1.1,12".getBytes(),
+            StandardOpenOption.APPEND
+        );
+
+        Inventory replayed = newInventory();
+        openJournal(replayed, Long.MAX_VALUE).close();
+        assertThat(export(replayed), is(export(inventory)));
+    }
+
+    @Test
+    public void appliedFilesAreSkippedTest() throws IOException {
+        Path ledgerFile = folder.getRoot().toPath().resolve("applied-updates.bin");
+        Path update = folder.newFile("quantity.csv").toPath();
+        Files.write(update, Arrays.asList(Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,5"));
+        Path again = folder.newFile("quantity-again.csv").toPath();
+        Files.copy(update, again, StandardCopyOption.REPLACE_EXISTING);
+
+        Inventory inventory = newInventory();
+        UpdateLedger ledger = UpdateLedger.open(ledgerFile);
+        InventoryJournal journal = InventoryJournal.open(
+            inventory,
+            snapshot,
+            Long.MAX_VALUE,
+            Optional.of(ledger),
+            error -> { }
+        );
+        List<List<Path>> applied = new ArrayList<>();
+        InventoryJournal.Update apply = files -> {
+            applied.add(files);
+            return true;
+        };
+        assertThat(
+            journal.applyNew(Arrays.asList(update, again), apply),
+            is(Arrays.asList(again))
+        );
+        assertThat(journal.applyNew(Arrays.asList(again), apply), is(Arrays.asList(again)));
+        assertThat(applied, is(Arrays.asList(Arrays.asList(update))));
+        // Crash after the journal was committed but before the ledger was written.
+        journal.commit();
+        Files.write(ledgerFile, new byte[0]);
+
+        Inventory replayed = newInventory();
+        UpdateLedger reopened = UpdateLedger.open(ledgerFile);
+        InventoryJournal.open(
+            replayed,
+            snapshot,
+            Long.MAX_VALUE,
+            Optional.of(reopened),
+            error -> { }
+        ).close();
+        assertThat(reopened.isApplied(UpdateLedger.digest(again)), is(true));
+        reopened.close();
+        assertThat(Files.size(ledgerFile), is((long) UpdateLedger.DIGEST_LENGTH));
+        journal.close();
+        ledger.close();
+    }
+}
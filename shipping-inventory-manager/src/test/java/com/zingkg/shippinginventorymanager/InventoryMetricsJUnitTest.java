@@ -0,0 +1,150 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class InventoryMetricsJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Inventory inventory;
+    private InventoryMetrics metrics;
+
+    @Before
+    public void setUp() {
+        inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        metrics = inventory.getMetrics();
+    }
+
+    private Path writeFile(String name, String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, Arrays.asList(lines));
+        return file;
+    }
+
+    @Test
+    public void operationsAreCountedTest() throws IOException {
+        inventory.loadInventory(
+            writeFile(
+                "inventory.csv",
+                Inventory.INVENTORY_HEADER,
+                "fp1,1.2.3 Y 1.4.-,5",
+                "fp2,1.2.4,6",
+                "fp3,9.2.4,6"
+            ),
+            error -> { }
+        );
+        assertThat(metrics.getItemCount(), is(2));
+        assertThat(metrics.getLocationCount(), is(3L));
+        assertThat(metrics.getErrorCounts().get("UNKNOWN_BUILDING"), is(1L));
+        assertThat(metrics.getRead().getCount(), is(1L));
+        assertThat(metrics.getParse().getCount(), is(1L));
+        assertThat(metrics.getValidate().getCount(), is(1L));
+        assertThat(metrics.getApply().getCount(), is(1L));
+        assertThat(metrics.getLastBatchLines(), is(0L));
+
+        inventory.updateLocations(
+            writeFile(
+                "locations.csv",
+                Inventory.LOCATIONS_UPDATE_HEADER,
+                "fp1,update,1.5.5",
+                "fp2,delete,-",
+                "fp4,update,1.1.1"
+            ),
+            error -> { },
+            ProgressMonitor.NONE
+        );
+        assertThat(metrics.getItemCount(), is(1));
+        assertThat(metrics.getLocationCount(), is(1L));
+        assertThat(metrics.getErrorCounts().get("UNKNOWN_ITEM"), is(1L));
+        assertThat(metrics.getApply().getCount(), is(2L));
+        assertThat(metrics.getLastBatchLines(), is(3L));
+
+        assertThat(metrics.getExport().getCount(), is(0L));
+        assertThat(
+            inventory.exportInventory().collect(Collectors.toList()),
+            is(Arrays.asList(Inventory.INVENTORY_HEADER, "fp1,1.5.5,5"))
+        );
+        assertThat(metrics.getExport().getCount(), is(1L));
+
+        metrics.reset();
+        assertThat(metrics.getApply().getCount(), is(0L));
+        assertThat(metrics.getErrorCounts().get("UNKNOWN_ITEM"), is(0L));
+        assertThat(metrics.getItemCount(), is(1));
+    }
+
+    @Test
+    public void lineTimerTest() {
+        InventoryMetrics.Operation operation = metrics.begin();
+        final long start = System.nanoTime();
+        InventoryMetrics.LineTimer timer = operation.lineTimer();
+        for (int line = 0; line < 1000; line++) {
+            timer.lap(InventoryMetrics.Phase.READ);
+            timer.lap(InventoryMetrics.Phase.PARSE);
+            timer.lap(InventoryMetrics.Phase.VALIDATE);
+            timer.lap(InventoryMetrics.Phase.APPLY);
+            timer.nextLine();
+        }
+        timer.finish();
+        final long elapsed = System.nanoTime() - start;
+        metrics.end();
+
+        // The whole loop is split between the phases that were timed.
+        final double total = metrics.getRead().getTotalMillis() +
+            metrics.getParse().getTotalMillis() + metrics.getValidate().getTotalMillis() +
+            metrics.getApply().getTotalMillis();
+        assertThat(total > 0 && total <= elapsed / 1e6 + 1e-3, is(true));
+        assertThat(metrics.getSave().getCount(), is(0L));
+    }
+
+    @Test
+    public void snapshotLocationsAreCountedTest() throws IOException {
+        Path base = folder.getRoot().toPath().resolve("inventory.bin");
+        InventorySnapshot.write(
+            base,
+            Collections.singletonList(inventory.parseItemRow("fp1,1.2.3 Y 1.4.-,5"))
+        );
+        inventory.openSnapshot(InventorySnapshot.openLatest(base).get());
+        assertThat(metrics.getItemCount(), is(1));
+        assertThat(metrics.getLocationCount(), is(2L));
+
+        inventory.putItem(inventory.parseItemRow("fp1,1.2.3,5"));
+        assertThat(metrics.getLocationCount(), is(1L));
+    }
+
+    @Test
+    public void registeredAsMXBeanTest() throws IOException, JMException {
+        inventory.loadInventory(
+            writeFile("inventory.csv", Inventory.INVENTORY_HEADER, "fp1,1.2.3,5"),
+            error -> { }
+        );
+        metrics.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(InventoryMetrics.OBJECT_NAME);
+            assertThat(server.getAttribute(name, "ItemCount"), is((Object) 1));
+            CompositeData parse = (CompositeData) server.getAttribute(name, "Parse");
+            assertThat(parse.get("count"), is((Object) 1L));
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class InventorySnapshotJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path base;
+    private List<Item> items;
+
+    @Before
+    public void setUp() {
+        base = folder.getRoot().toPath().resolve("inventory.bin");
+        items = Arrays.asList(
+            new Item("fp3", Stream.empty(), Optional.of(3)),
+            new Item(
+                "fp1",
+                Stream.of(new PIL("1", "2", Optional.of("3")), new PIL("1", "4", Optional.empty())),
+                Optional.empty()
+            ),
+            new Item("fp2", Stream.of(new PIL("2", "2", Optional.of("9"))), Optional.of(-4))
+        );
+    }
+
+    private static void corrupt(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            file,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        )) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0xFF));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    @Test
+    public void writeAndReadTest() throws IOException {
+        Path file = InventorySnapshot.write(base, items);
+        assertThat(file.getFileName().toString(), is("inventory.bin.1"));
+        try (InventorySnapshot snapshot = InventorySnapshot.openLatest(base).get()) {
+            assertThat(snapshot.size(), is(3));
+            assertThat(snapshot.verify(), is(true));
+            assertThat(
+                snapshot.items().map(Item::toCSVRow).collect(Collectors.toList()),
+                is(Arrays.asList("fp1,1.2.3 Y 1.4.-,-", "fp2,2.2.9,-4", "fp3,-,3"))
+            );
+            assertThat(snapshot.find("fp2").get().toCSVRow(), is("fp2,2.2.9,-4"));
+            assertThat(snapshot.find("fp0").isPresent(), is(false));
+            assertThat(snapshot.find("fp4").isPresent(), is(false));
+        }
+    }
+
+    @Test
+    public void newerGenerationReplacesOlderTest() throws IOException {
+        InventorySnapshot.write(base, items);
+        Path file = InventorySnapshot.write(base, items.subList(0, 1));
+        assertThat(file.getFileName().toString(), is("inventory.bin.2"));
+        try (InventorySnapshot snapshot = InventorySnapshot.openLatest(base).get()) {
+            assertThat(snapshot.size(), is(1));
+            assertThat(snapshot.getGeneration(), is(2L));
+        }
+
+        // The older generation is kept to fall back to until it is deleted.
+        corrupt(file, file.toFile().length() - 1);
+        try (InventorySnapshot snapshot = InventorySnapshot.openLatest(base).get()) {
+            assertThat(snapshot.size(), is(3));
+            assertThat(snapshot.getGeneration(), is(1L));
+        }
+        InventorySnapshot.deleteGenerationsBefore(base, 2);
+        assertThat(base.resolveSibling("inventory.bin.1").toFile().exists(), is(false));
+        assertThat(InventorySnapshot.latestGeneration(base), is(2L));
+    }
+
+    @Test
+    public void corruptionIsDetectedTest() throws IOException {
+        Path file = InventorySnapshot.write(base, items);
+        corrupt(file, 60);
+        try (InventorySnapshot snapshot = InventorySnapshot.open(file)) {
+            assertThat(snapshot.verify(), is(false));
+        }
+
+        corrupt(file, 9);
+        assertThat(InventorySnapshot.openLatest(base).isPresent(), is(false));
+    }
+
+    @Test
+    public void indexCorruptionIsDetectedByVerifyTest() throws IOException {
+        Path file = InventorySnapshot.write(base, items);
+        // The last byte of the last index entry, opening does not read the index.
+        corrupt(file, file.toFile().length() - 1);
+        try (InventorySnapshot snapshot = InventorySnapshot.open(file)) {
+            assertThat(snapshot.size(), is(3));
+            assertThat(snapshot.verify(), is(false));
+        }
+    }
+
+    @Test
+    public void mappedInWindowsTest() throws IOException {
+        Path file = InventorySnapshot.write(base, items);
+        // Every value and string of the file is split between windows somewhere.
+        for (long windowSize = 1; windowSize <= 9; windowSize++) {
+            try (InventorySnapshot snapshot = InventorySnapshot.open(file, windowSize)) {
+                assertThat(snapshot.verify(), is(true));
+                assertThat(
+                    snapshot.items().map(Item::toCSVRow).collect(Collectors.toList()),
+                    is(Arrays.asList("fp1,1.2.3 Y 1.4.-,-", "fp2,2.2.9,-4", "fp3,-,3"))
+                );
+                assertThat(snapshot.find("fp2").get().toCSVRow(), is("fp2,2.2.9,-4"));
+                assertThat(snapshot.locationCount(), is(3L));
+            }
+        }
+    }
+
+    @Test
+    public void unsortedItemsAreRejectedTest() throws IOException {
+        try {
+            InventorySnapshot.write(base, items.size(), items.stream());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // The items have to be in item id order.
+        }
+        assertThat(InventorySnapshot.latestGeneration(base), is(0L));
+        assertThat(base.resolveSibling("inventory.bin.tmp").toFile().exists(), is(false));
+    }
+
+    @Test
+    public void snapshotStoreOverlayTest() throws IOException {
+        InventorySnapshot.write(base, items);
+        SnapshotInventoryStore store = new SnapshotInventoryStore(
+            InventorySnapshot.openLatest(base).get(),
+            new HashInventoryStore()
+        );
+        store.put(new Item("fp1", Stream.empty(), Optional.of(1)));
+        store.put(new Item("fp4", Stream.empty(), Optional.of(4)));
+        store.remove("fp3");
+        assertThat(store.size(), is(3));
+        assertThat(store.get("fp1").get().toCSVRow(), is("fp1,-,1"));
+        assertThat(store.contains("fp3"), is(false));
+        assertThat(
+            store.itemIds().sorted().collect(Collectors.toList()),
+            is(Arrays.asList("fp1", "fp2", "fp4"))
+        );
+        assertThat(
+            store.sortedItems().map(Item::getItemId).collect(Collectors.toList()),
+            is(Arrays.asList("fp1", "fp2", "fp4"))
+        );
+
+        store.remove("fp1");
+        assertThat(store.get("fp1").isPresent(), is(false));
+        assertThat(store.size(), is(2));
+        store.clear();
+        assertThat(store.items().count(), is(0L));
+    }
+
+    @Test
+    public void snapshotStoreUpdateTest() throws IOException {
+        InventorySnapshot.write(base, items);
+        SnapshotInventoryStore store = new SnapshotInventoryStore(
+            InventorySnapshot.openLatest(base).get(),
+            new HashInventoryStore()
+        );
+        Item update = new Item(
+            "fp1",
+            Stream.of(new PIL("2", "5", Optional.empty())),
+            Optional.of(8)
+        );
+        assertThat(
+            store.updateQuantity(update).get().getPrevious().toCSVRow(),
+            is("fp1,1.2.3 Y 1.4.-,-")
+        );
+        assertThat(
+            store.updateLocations(update).get().getPrevious().toCSVRow(),
+            is("fp1,1.2.3 Y 1.4.-,8")
+        );
+        assertThat(store.get("fp1").get().toCSVRow(), is("fp1,2.5.-,8"));
+        assertThat(store.size(), is(3));
+        assertThat(
+            store.sortedItems().map(Item::toCSVRow).collect(Collectors.toList()),
+            is(Arrays.asList("fp1,2.5.-,8", "fp2,2.2.9,-4", "fp3,-,3"))
+        );
+
+        store.remove("fp3");
+        Item removed = new Item("fp3", Stream.empty(), Optional.of(1));
+        assertThat(store.updateQuantity(removed).isPresent(), is(false));
+        assertThat(store.contains("fp3"), is(false));
+    }
+}
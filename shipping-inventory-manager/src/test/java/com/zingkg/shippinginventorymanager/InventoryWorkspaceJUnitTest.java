@@ -0,0 +1,102 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLStreamException;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class InventoryWorkspaceJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        Files.createDirectories(root.resolve("internal"));
+        Files.write(
+            root.resolve(InventoryWorkspace.SETUP_FILE_PATH),
+            (
+                "<?xml version=\"1.0\"?>\n" +
+                "<buildings>\n" +
+                "    <building name=\"1\"><aisles>20</aisles></building>\n" +
+                "</buildings>\n"
+            ).getBytes(StandardCharsets.UTF_8)
+        );
+        Files.write(
+            root.resolve(InventoryWorkspace.INVENTORY_FILE_PATH),
+            Arrays.asList(Inventory.INVENTORY_HEADER, "fp1,1.1.1,1", "fp2,1.2.-,2")
+        );
+    }
+
+    private static List<String> export(Inventory inventory) {
+        return inventory.exportInventory().collect(Collectors.toList());
+    }
+
+    private static void updateQuantity(Inventory inventory, String line) {
+        inventory.updateQuantity(Stream.of(Inventory.QUANTITY_UPDATE_HEADER, line), "quantity.csv");
+    }
+
+    /**
+     * Flips a byte of the first record of the snapshot, which only its checksum tells.
+     */
+    private static void corruptFirstRecord(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            file,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        )) {
+            // Past the header and the length of the item id, into its last character.
+            final long position = 48 + 4;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0x01));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    @Test
+    public void corruptSnapshotIsRecoveredTest() throws IOException, XMLStreamException {
+        List<InventoryError> errors = new ArrayList<>();
+        final List<String> expected;
+        try (InventoryWorkspace workspace = InventoryWorkspace.open(root, errors::add)) {
+            Inventory inventory = workspace.getInventory();
+            InventoryJournal journal = workspace.getJournal();
+            updateQuantity(inventory, "fp1,update,5");
+            journal.compact();
+            journal.awaitCompaction();
+            updateQuantity(inventory, "fp3,add,7");
+            journal.compact();
+            journal.awaitCompaction();
+            updateQuantity(inventory, "fp2,update,9");
+            expected = export(inventory);
+        }
+        Path newest = root.resolve(InventoryWorkspace.SNAPSHOT_FILE_PATH + ".2");
+        assertThat(Files.exists(newest), is(true));
+        corruptFirstRecord(newest);
+
+        try (InventoryWorkspace workspace = InventoryWorkspace.open(root, errors::add)) {
+            assertThat(export(workspace.getInventory()), is(expected));
+        }
+        assertThat(errors.size(), is(0));
+    }
+}
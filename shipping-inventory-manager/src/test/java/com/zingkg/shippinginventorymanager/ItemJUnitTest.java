@@ -2,6 +2,8 @@ package com.zingkg.shippinginventorymanager;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +38,26 @@ public class ItemJUnitTest {
         assertThat(csvRow3, is("fp3,b2.2.12,-"));
     }
 
+    @Test
+    public void appendCSVRowTest() throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvWriter csv = new CsvWriter(writer);
+        new Item("fp1", Stream.of(new PIL("b1", "2", Optional.empty())), Optional.of(0))
+            .appendCSVRow(csv);
+        csv.append('\n');
+        new Item("fp2", Stream.empty(), Optional.of(-305)).appendCSVRow(csv);
+        csv.append('\n');
+        new Item("fp3", Stream.empty(), Optional.of(Integer.MIN_VALUE)).appendCSVRow(csv);
+        csv.append('\n');
+        new Item("fp4", Stream.empty(), Optional.of(Integer.MAX_VALUE)).appendCSVRow(csv);
+        csv.flush();
+        assertThat(
+            writer.toString(),
+            is("fp1,b1.2.-,0\nfp2,-,-305\nfp3,-,-2147483648\nfp4,-,2147483647")
+        );
+        assertThat(csv.written(), is((long) writer.toString().length()));
+    }
+
     @Test
     public void updateLocationsTest() {
         Item item = new Item("fp1", Stream.empty(), Optional.of(3));
@@ -67,4 +89,13 @@ public class ItemJUnitTest {
         assertThat(item.getLocations().count(), is(0L));
         assertThat(item.getQuantity().isPresent(), is(false));
     }
+
+    @Test
+    public void pilEqualityTest() {
+        PIL pil = new PIL("b1", "2", Optional.of("12"));
+        assertThat(pil, is(new PIL("b1", "2", Optional.of("12"))));
+        assertThat(pil.hashCode(), is(new PIL("b1", "2", Optional.of("12")).hashCode()));
+        assertThat(pil.equals(new PIL("b1", "2", Optional.empty())), is(false));
+        assertThat(pil.equals(new PIL("b1", "3", Optional.of("12"))), is(false));
+    }
 }
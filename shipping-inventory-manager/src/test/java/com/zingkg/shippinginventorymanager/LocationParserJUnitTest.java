@@ -0,0 +1,81 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class LocationParserJUnitTest {
+    /**
+     * The regular expression based parser that the tokenizer replaced.
+     */
+    private static List<String> regexParse(String locations) {
+        if (locations.equals("-"))
+            return Arrays.asList();
+
+        return Arrays.stream(locations.replaceAll(" Y ", " y ").split("y")).map(location -> {
+            String[] locationTokens = location.trim().split("\\.");
+            if (locationTokens.length < 3)
+                throw new InventoryParseException("Exception occurred when parsing locations.");
+
+            Optional<String> pilLocation;
+            if (locationTokens[2].equals("-"))
+                pilLocation = Optional.empty();
+            else
+                pilLocation = Optional.of(locationTokens[2]);
+            return describe(new PIL(locationTokens[0], locationTokens[1], pilLocation));
+        }).collect(Collectors.toList());
+    }
+
+    private static String describe(PIL pil) {
+        return pil.getBuilding() + '|' + pil.getAisle() + '|' + pil.getPIL().orElse("<none>");
+    }
+
+    private static String parse(String locations, Parser parser) {
+        try {
+            return parser.parse(locations).toString();
+        } catch (InventoryParseException e) {
+            return "error";
+        }
+    }
+
+    private interface Parser {
+        List<String> parse(String locations);
+    }
+
+    @Test
+    public void parseTest() {
+        List<PIL> pils = LocationParser.parse("b1.2.12 Y b1.2.-");
+        assertThat(pils.size(), is(2));
+        assertThat(pils.get(0).getBuilding(), is("b1"));
+        assertThat(pils.get(0).getAisle(), is("2"));
+        assertThat(pils.get(0).getPIL().get(), is("12"));
+        assertThat(pils.get(1).getPIL().isPresent(), is(false));
+        assertThat(LocationParser.parse("-").isEmpty(), is(true));
+    }
+
+    @Test
+    public void matchesRegexParserTest() {
+        List<String> inputs = Arrays.asList(
+            "1.2.3", "1.-.-", "1.2.3 Y 2.3.4", "1.2.3y2.3.4", "1.2.3 y 2.3.4",
+            "1.2.3 Y 2.3.4 Y 3.4.5",
+            "1.2", "1", "", " ", "y", "yy", "1.2.3y", "1.2.3yy", "y1.2.3", "1.2.3 Y ", "1.2.3 Y",
+            "1.2.3 Y Y 2.3.4", "1.2.3 YY 2.3.4", "1.2.3.4", "1.2.", "1.2..", "1..3", "..3", "...",
+            "1.2..4", " 1.2.3 ", "A.B.C", "aYb.c.d", "1.2.3Y4.5.6", "-.-.-", "1.2.3 Y  Y 4.5.6"
+        );
+        for (String input : inputs) {
+            assertThat(
+                input,
+                parse(input, locations -> LocationParser.parse(locations).stream().map(
+                    LocationParserJUnitTest::describe
+                ).collect(Collectors.toList())),
+                is(parse(input, LocationParserJUnitTest::regexParse))
+            );
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class PersistentInventoryStoreJUnitTest {
+    private static Item item(String itemId, int quantity) {
+        return new Item(
+            itemId,
+            Stream.of(new PIL("1", "" + quantity % 7, Optional.empty())),
+            Optional.of(quantity)
+        );
+    }
+
+    private static List<String> rows(InventoryStore store) {
+        return store.sortedItems().map(Item::toCSVRow).collect(Collectors.toList());
+    }
+
+    @Test
+    public void matchesHashStoreTest() {
+        Random random = new Random(7);
+        InventoryStore expected = new HashInventoryStore();
+        InventoryStore actual = new PersistentInventoryStore();
+        for (int i = 0; i < 100000; i++) {
+            final String itemId = "fp" + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(itemId);
+                actual.remove(itemId);
+            } else {
+                Item item = item(itemId, random.nextInt(1000));
+                expected.put(item);
+                actual.put(item);
+            }
+            assertThat(actual.contains(itemId), is(expected.contains(itemId)));
+        }
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(rows(actual), is(rows(expected)));
+        assertThat(
+            actual.itemIds().collect(Collectors.toList()),
+            is(expected.sortedItems().map(Item::getItemId).collect(Collectors.toList()))
+        );
+    }
+
+    @Test
+    public void snapshotIsIsolatedTest() {
+        InventoryStore store = new PersistentInventoryStore();
+        for (int i = 0; i < 100; i++)
+            store.put(item(String.format("fp%03d", i), i));
+
+        List<InventoryStore> snapshots = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i += 10) {
+            snapshots.add(store.snapshot());
+            expected.add(rows(store));
+            store.remove(String.format("fp%03d", i));
+            store.put(item(String.format("fp%03d", i + 1), -i));
+            store.put(item("fp" + (1000 + i), i));
+        }
+        for (int i = 0; i < snapshots.size(); i++)
+            assertThat(rows(snapshots.get(i)), is(expected.get(i)));
+        assertThat(snapshots.get(0).size(), is(100));
+        assertThat(snapshots.get(0).get("fp001").get().getQuantity(), is(Optional.of(1)));
+        assertThat(store.get("fp001").get().getQuantity(), is(Optional.of(0)));
+
+        InventoryStore copy = store.snapshot();
+        copy.clear();
+        assertThat(copy.size(), is(0));
+        assertThat(store.size(), is(100));
+    }
+}
@@ -0,0 +1,39 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class StagingInventoryStoreJUnitTest {
+    private static Item item(String itemId, int quantity) {
+        return new Item(itemId, Stream.empty(), Optional.of(quantity));
+    }
+
+    @Test
+    public void sizeMatchesItemsTest() {
+        Random random = new Random(11);
+        InventoryStore base = new HashInventoryStore();
+        for (int i = 0; i < 200; i += 2)
+            base.put(item("fp" + i, i));
+
+        StagingInventoryStore staging = new StagingInventoryStore(base);
+        assertThat(staging.size(), is(100));
+        for (int i = 0; i < 5000; i++) {
+            final String itemId = "fp" + random.nextInt(300);
+            final int action = random.nextInt(50);
+            if (action == 0)
+                staging.clear();
+            else if (action < 20)
+                staging.remove(itemId);
+            else
+                staging.put(item(itemId, i));
+            assertThat(staging.size(), is((int) staging.itemIds().count()));
+        }
+        assertThat(base.size(), is(100));
+    }
+}
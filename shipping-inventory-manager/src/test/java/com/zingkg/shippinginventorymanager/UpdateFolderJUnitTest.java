@@ -0,0 +1,142 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class UpdateFolderJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(Path file, String... lines) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".part");
+        Files.write(temporary, Arrays.asList(lines));
+        Files.move(temporary, file);
+    }
+
+    @Test
+    public void droppedFilesAreAppliedInOrderTest() throws Exception {
+        Inventory inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        inventory.loadInventory(
+            Stream.of(Inventory.INVENTORY_HEADER, "fp1,1.2.3,5"),
+            "inventory.csv"
+        );
+        Path drop = folder.getRoot().toPath();
+        write(
+            drop.resolve("quantity.csv"),
+            Inventory.QUANTITY_UPDATE_HEADER,
+            "fp1,update,7"
+        );
+        // Files are taken in modification order, which the clock of the file system may not tell
+        // apart if the watcher first lists the folder after the next file is dropped.
+        Files.setLastModifiedTime(
+            drop.resolve("quantity.csv"),
+            FileTime.fromMillis(System.currentTimeMillis() - 60000)
+        );
+
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        UpdateFolder updates = new UpdateFolder(inventory, drop, 50, result -> results.add(
+            result.getFile().getParent().getFileName() + "/" + result.getFile().getFileName() +
+            ' ' + result.isApplied() + ' ' + result.getFailures()
+        ));
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread watcher = new Thread(() -> {
+            try {
+                updates.run();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        watcher.start();
+
+        write(
+            drop.resolve("locations.csv"),
+            Inventory.LOCATIONS_UPDATE_HEADER,
+            "fp1,update,1.4.4",
+            "fp2,add,1.5.5"
+        );
+        write(drop.resolve("unknown.csv"), "item number,pil", "fp3,1.1.1");
+        write(drop.resolve("quantity.csv.part"), Inventory.QUANTITY_UPDATE_HEADER);
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (results.size() < 3 && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        updates.close();
+        watcher.join();
+
+        assertThat(failure.get() == null, is(true));
+        assertThat(
+            results,
+            is(Arrays.asList(
+                "done/quantity.csv true 0",
+                "done/locations.csv true 0",
+                "failed/unknown.csv false 2"
+            ))
+        );
+        assertThat(inventory.getItem("fp1").get().toCSVRow(), is("fp1,1.4.4,7"));
+        assertThat(inventory.getItem("fp2").isPresent(), is(true));
+        assertThat(Files.exists(drop.resolve("failed/unknown.csv.errors")), is(true));
+        assertThat(Files.exists(drop.resolve("done/locations.csv.errors")), is(false));
+        assertThat(Files.exists(drop.resolve("quantity.csv.part")), is(true));
+    }
+
+    @Test
+    public void unreadableFileIsRejectedTest() throws Exception {
+        Inventory inventory = new Inventory(Stream.of(new Building("1", 20, Stream.empty())));
+        inventory.loadInventory(
+            Stream.of(Inventory.INVENTORY_HEADER, "fp1,1.2.3,5"),
+            "inventory.csv"
+        );
+        Path drop = folder.getRoot().toPath();
+        // The gzip magic followed by a truncated header.
+        Path temporary = drop.resolve("corrupt.csv.gz.part");
+        Files.write(temporary, new byte[] { 0x1F, (byte) 0x8B, 8, 0, 1 });
+        Files.move(temporary, drop.resolve("corrupt.csv.gz"));
+
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        UpdateFolder updates = new UpdateFolder(inventory, drop, 50, result -> results.add(
+            result.getFile().getParent().getFileName() + "/" + result.getFile().getFileName() +
+            ' ' + result.isApplied() + ' ' + result.getFailures()
+        ));
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread watcher = new Thread(() -> {
+            try {
+                updates.run();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        watcher.start();
+        write(drop.resolve("quantity.csv"), Inventory.QUANTITY_UPDATE_HEADER, "fp1,update,7");
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (results.size() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        updates.close();
+        watcher.join();
+
+        assertThat(failure.get() == null, is(true));
+        assertThat(
+            results,
+            is(Arrays.asList("failed/corrupt.csv.gz false 1", "done/quantity.csv true 0"))
+        );
+        List<String> errors = Files.readAllLines(drop.resolve("failed/corrupt.csv.gz.errors"));
+        assertThat(errors.size(), is(1));
+        assertThat(errors.get(0).startsWith("Updating inventory file corrupt.csv.gz"), is(true));
+        assertThat(inventory.getItem("fp1").get().toCSVRow(), is("fp1,1.2.3,7"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.zingkg.shippinginventorymanager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class UpdateLedgerJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void digestTest() throws IOException {
+        Path update = folder.newFile().toPath();
+        Files.write(update, "fp1,update,5\n".getBytes(StandardCharsets.UTF_8));
+        final String hex = "7a760a3575472089fdd47b883b43f8f2721df9876d36315be6c4e47795958295";
+        assertThat(UpdateLedger.toHex(UpdateLedger.digest(update)), is(hex));
+        assertThat(UpdateLedger.toHex(UpdateLedger.fromHex(hex)), is(hex));
+    }
+
+    @Test
+    public void reopenTest() throws IOException {
+        Path ledgerFile = folder.getRoot().toPath().resolve("applied-updates.bin");
+        final byte[] first = new byte[UpdateLedger.DIGEST_LENGTH];
+        final byte[] second = new byte[UpdateLedger.DIGEST_LENGTH];
+        second[0] = 1;
+        try (UpdateLedger ledger = UpdateLedger.open(ledgerFile)) {
+            ledger.applied(first);
+            ledger.applied(first);
+            assertThat(ledger.isApplied(first), is(true));
+            assertThat(ledger.isApplied(second), is(false));
+        }
+        assertThat(Files.size(ledgerFile), is((long) UpdateLedger.DIGEST_LENGTH));
+
+        // A torn digest left by a crash during an append is dropped.
+        Files.write(ledgerFile, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+        try (UpdateLedger ledger = UpdateLedger.open(ledgerFile)) {
+            assertThat(ledger.isApplied(first), is(true));
+            ledger.applied(second);
+        }
+        try (UpdateLedger ledger = UpdateLedger.open(ledgerFile)) {
+            assertThat(ledger.isApplied(first), is(true));
+            assertThat(ledger.isApplied(second), is(true));
+        }
+        assertThat(Files.size(ledgerFile), is(2L * UpdateLedger.DIGEST_LENGTH));
+    }
+}